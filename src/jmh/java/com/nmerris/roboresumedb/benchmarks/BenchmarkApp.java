@@ -0,0 +1,85 @@
+package com.nmerris.roboresumedb.benchmarks;
+
+import com.nmerris.roboresumedb.NavBarState;
+import com.nmerris.roboresumedb.Week4ProjectApplication;
+import com.nmerris.roboresumedb.controllers.MainController;
+import com.nmerris.roboresumedb.models.Person;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the whole app against an empty in memory H2 db, then seeds it with BenchmarkData.  JMH runs each benchmark
+ * in its own forked JVM, so each benchmark class starts its own app in its @Setup.
+ */
+public final class BenchmarkApp {
+
+    private BenchmarkApp() {
+    }
+
+
+    // extraArgs are more --property=value command line args, they override application.properties
+    public static ConfigurableApplicationContext start(String... extraArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--spring.datasource.url=jdbc:h2:mem:jobpro;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=bench",
+                "--spring.datasource.password=bench",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                // the migrations are postgres sql, hibernate builds the H2 schema from the entities instead
+                "--flyway.enabled=false",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                // sessions in memory, there are no session tables without flyway
+                "--spring.session.store-type=hash_map",
+                "--server.port=0",
+                // no /metrics port, so benchmark forks can't clash over it
+                "--management.port=-1",
+                // keep the scheduled skill catalog reload from running in the middle of a measurement
+                "--jobpro.skills.refresh-ms=3600000"));
+        args.addAll(Arrays.asList(extraArgs));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Week4ProjectApplication.class)
+                .run(args.toArray(new String[args.size()]));
+        BenchmarkData.seed(context);
+        return context;
+    }
+
+    /**
+     * MainController.getPageLinkState is private, it's called through a MethodHandle on the real controller (not the
+     * transactional proxy, which has none of the controller's autowired fields).
+     */
+    public static PageLinkState pageLinkState(ConfigurableApplicationContext context) throws Exception {
+        Object controller = AopProxyUtils.getSingletonTarget(context.getBean(MainController.class));
+        if(controller == null) {
+            controller = context.getBean(MainController.class);
+        }
+        Method method = MainController.class.getDeclaredMethod("getPageLinkState", Person.class);
+        method.setAccessible(true);
+        return new PageLinkState(MethodHandles.lookup().unreflect(method).bindTo(controller));
+    }
+
+
+    public static final class PageLinkState {
+
+        private final MethodHandle handle;
+
+        private PageLinkState(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        public NavBarState of(Person p) {
+            try {
+                return (NavBarState) handle.invoke(p);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+}
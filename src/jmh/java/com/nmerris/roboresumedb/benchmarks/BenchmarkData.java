@@ -0,0 +1,206 @@
+package com.nmerris.roboresumedb.benchmarks;
+
+import com.nmerris.roboresumedb.models.*;
+import com.nmerris.roboresumedb.repositories.*;
+import org.springframework.context.ApplicationContext;
+
+import java.util.*;
+
+/**
+ * A realistic, repeatable data set for the benchmarks: a few thousand job seekers with full resumes and a hundred
+ * recruiters with a couple thousand job postings between them.  Always built from the same random seed, so every run
+ * benchmarks exactly the same data.
+ */
+public final class BenchmarkData {
+
+    public static final int SEEKERS = 3000;
+    public static final int RECRUITERS = 100;
+    public static final int JOBS_PER_RECRUITER = 20;
+    public static final int MAX_SKILLS_PER_SEEKER = 12;
+    public static final int EDS_PER_SEEKER = 2;
+    public static final int WORK_EXPS_PER_SEEKER = 3;
+
+    public static final String[] RATINGS = {"Expert", "Proficient", "Familiar"};
+
+    // the earlier names are picked more often, like real skills
+    public static final String[] SKILL_NAMES = {
+            "Java", "SQL", "JavaScript", "HTML", "CSS", "Spring", "Python", "Git", "Linux", "REST", "Hibernate",
+            "PostgreSQL", "MySQL", "Thymeleaf", "Bootstrap", "jQuery", "Maven", "Gradle", "Docker", "AWS", "React",
+            "Angular", "Node.js", "C#", "C++", "Go", "Kotlin", "Scala", "Ruby", "PHP", "Excel", "Photoshop",
+            "Project Management", "Agile", "Scrum", "Customer Service", "Public Speaking", "Technical Writing",
+            "Networking", "Security"};
+
+    public static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+            "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "Christopher", "Nancy", "Daniel", "Lisa", "Matthew", "Betty", "Anthony", "Margaret", "Mark", "Sandra"};
+
+    public static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+            "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson"};
+
+    public static final String[] SCHOOLS = {
+            "University of Maryland", "Montgomery College", "Johns Hopkins University", "George Washington University",
+            "Georgetown University", "Howard University", "American University", "Towson University",
+            "University of Virginia", "Virginia Tech", "George Mason University", "Penn State University",
+            "Ohio State University", "University of Michigan", "Stanford University", "MIT", "Carnegie Mellon University",
+            "University of Texas", "Arizona State University", "Community College of Baltimore County"};
+
+    public static final String[] MAJORS = {
+            "Computer Science", "Information Systems", "Mathematics", "Business", "Economics", "English", "History",
+            "Biology", "Physics", "Mechanical Engineering", "Electrical Engineering", "Graphic Design"};
+
+    public static final String[] COMPANIES = {
+            "Acme Corp", "Globex", "Initech", "Umbrella", "Stark Industries", "Wayne Enterprises", "Wonka Industries",
+            "Hooli", "Pied Piper", "Vandelay Industries", "Cyberdyne Systems", "Soylent", "Massive Dynamic",
+            "Oscorp", "Tyrell Corp", "Aperture Science", "Black Mesa", "Dunder Mifflin", "Prestige Worldwide",
+            "Gringotts"};
+
+    public static final String[] JOB_TITLES = {
+            "Software Engineer", "Senior Software Engineer", "Java Developer", "Web Developer", "Database Administrator",
+            "Systems Analyst", "Project Manager", "QA Engineer", "DevOps Engineer", "Data Analyst",
+            "Technical Writer", "Help Desk Technician", "Network Engineer", "Security Analyst", "Product Manager"};
+
+    public static final String[] DUTIES = {
+            "Wrote and maintained Java services", "Designed database schemas", "Reviewed code", "Fixed bugs",
+            "Trained new hires", "Wrote documentation", "Talked to customers", "Ran the nightly build",
+            "Planned sprints", "Tuned slow queries"};
+
+    public static final String PASSWORD = "password";
+
+    private BenchmarkData() {
+    }
+
+
+    public static String seekerUsername(int i) {
+        return "seeker" + i;
+    }
+
+    public static String recruiterUsername(int i) {
+        return "recruiter" + i;
+    }
+
+    // fills the empty db, call once, right after the app starts
+    public static void seed(ApplicationContext context) {
+        RoleRepo roleRepo = context.getBean(RoleRepo.class);
+        SkillRepo skillRepo = context.getBean(SkillRepo.class);
+        PersonRepo personRepo = context.getBean(PersonRepo.class);
+        EducationRepo educationRepo = context.getBean(EducationRepo.class);
+        WorkExperienceRepo workExperienceRepo = context.getBean(WorkExperienceRepo.class);
+        JobRepo jobRepo = context.getBean(JobRepo.class);
+
+        Random random = new Random(42);
+
+        Role userRole = new Role();
+        userRole.setRole("ROLE_USER");
+        roleRepo.save(userRole);
+        Role recruiterRole = new Role();
+        recruiterRole.setRole("ROLE_RECRUITER");
+        roleRepo.save(recruiterRole);
+
+        // one Skill per name/rating pair, just like the real catalog
+        List<Skill> catalog = new ArrayList<>();
+        for (String name : SKILL_NAMES) {
+            for (String rating : RATINGS) {
+                Skill skill = new Skill();
+                skill.setSkill(name);
+                skill.setRating(rating);
+                catalog.add(skill);
+            }
+        }
+        skillRepo.save(catalog);
+
+        // everything is saved a whole list at a time, so the inserts go out in jdbc batches
+        List<Person> seekers = new ArrayList<>();
+        List<EducationAchievement> eds = new ArrayList<>();
+        List<WorkExperience> workExps = new ArrayList<>();
+        for (int i = 0; i < SEEKERS; i++) {
+            Person seeker = newPerson(seekerUsername(i), random, userRole);
+            int numSkills = 1 + random.nextInt(MAX_SKILLS_PER_SEEKER);
+            for (int s = 0; s < numSkills; s++) {
+                seeker.addSkill(catalog.get(popular(random, catalog.size())));
+            }
+            seekers.add(seeker);
+
+            for (int e = 0; e < EDS_PER_SEEKER; e++) {
+                EducationAchievement ea = new EducationAchievement();
+                ea.setSchool(pick(random, SCHOOLS));
+                ea.setMajor(pick(random, MAJORS));
+                ea.setGraduationYear(1980 + random.nextInt(38));
+                ea.setMyPerson(seeker);
+                eds.add(ea);
+            }
+
+            for (int w = 0; w < WORK_EXPS_PER_SEEKER; w++) {
+                WorkExperience we = new WorkExperience();
+                we.setCompany(pick(random, COMPANIES));
+                we.setJobTitle(pick(random, JOB_TITLES));
+                we.setDutyOne(pick(random, DUTIES));
+                we.setDutyTwo(random.nextBoolean() ? pick(random, DUTIES) : "");
+                Calendar start = new GregorianCalendar(1995 + random.nextInt(20), random.nextInt(12), 1 + random.nextInt(28));
+                we.setDateStart(start.getTime());
+                // the most recent job has no end date, so it shows as 'Present'
+                if(w > 0) {
+                    start.add(Calendar.MONTH, 6 + random.nextInt(36));
+                    we.setDateEnd(start.getTime());
+                }
+                we.setMyPerson(seeker);
+                workExps.add(we);
+            }
+        }
+        personRepo.save(seekers);
+        educationRepo.save(eds);
+        workExperienceRepo.save(workExps);
+
+        List<Person> recruiters = new ArrayList<>();
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < RECRUITERS; i++) {
+            Person recruiter = newPerson(recruiterUsername(i), random, recruiterRole);
+            recruiters.add(recruiter);
+
+            for (int j = 0; j < JOBS_PER_RECRUITER; j++) {
+                Job job = new Job();
+                job.setTitle(pick(random, JOB_TITLES));
+                job.setEmployer(pick(random, COMPANIES));
+                job.setDescription("Looking for a " + pick(random, SKILL_NAMES) + " and " + pick(random, SKILL_NAMES)
+                        + " person to join our team at " + pick(random, COMPANIES));
+                job.setMinSalary(30000 + 1000 * random.nextInt(50));
+                job.setMaxSalary(job.getMinSalary() + 1000 * random.nextInt(60));
+                // a job can have up to three skills, same as the add job form
+                int numSkills = 1 + random.nextInt(3);
+                for (int s = 0; s < numSkills; s++) {
+                    job.addSkill(catalog.get(popular(random, catalog.size())));
+                }
+                job.setMyPerson(recruiter);
+                jobs.add(job);
+            }
+        }
+        personRepo.save(recruiters);
+        jobRepo.save(jobs);
+    }
+
+
+    private static Person newPerson(String username, Random random, Role role) {
+        Person p = new Person();
+        p.setUsername(username);
+        p.setPassword(PASSWORD);
+        p.setNameFirst(pick(random, FIRST_NAMES));
+        p.setNameLast(pick(random, LAST_NAMES));
+        p.setEmail(username + "@example.com");
+        p.setEnabled(true);
+        p.addRole(role);
+        return p;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // skewed towards the start of the list, so some skills are much more common than others
+    private static int popular(Random random, int size) {
+        double r = random.nextDouble();
+        return (int) (size * r * r);
+    }
+
+}
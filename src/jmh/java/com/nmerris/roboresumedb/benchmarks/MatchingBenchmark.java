@@ -0,0 +1,59 @@
+package com.nmerris.roboresumedb.benchmarks;
+
+import com.nmerris.roboresumedb.SkillMatch;
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.services.SkillCatalog;
+import com.nmerris.roboresumedb.services.SkillMatchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The seeker matching done by POST /addjob: rank every seeker against a newly posted job and load the top k.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchingBenchmark {
+
+    // the add job form allows up to three skills
+    @Param({"1", "3"})
+    public int jobSkills;
+
+    private ConfigurableApplicationContext context;
+    private SkillMatchIndex skillMatchIndex;
+    private Job job;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        skillMatchIndex = context.getBean(SkillMatchIndex.class);
+
+        SkillCatalog.Snapshot skills = context.getBean(SkillCatalog.class).get();
+        job = new Job();
+        for (int i = 0; i < jobSkills; i++) {
+            job.addSkill(skills.find(BenchmarkData.SKILL_NAMES[i], BenchmarkData.RATINGS[i % BenchmarkData.RATINGS.length]));
+        }
+
+        // the index is built the first time it's used, that's not what's being measured
+        skillMatchIndex.topMatches(job);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public List<SkillMatch> topMatches() {
+        return skillMatchIndex.topMatches(job);
+    }
+
+}
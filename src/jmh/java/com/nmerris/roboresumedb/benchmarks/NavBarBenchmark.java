@@ -0,0 +1,48 @@
+package com.nmerris.roboresumedb.benchmarks;
+
+import com.nmerris.roboresumedb.NavBarState;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MainController.getPageLinkState, which runs on nearly every job seeker page to build the navbar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavBarBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private BenchmarkApp.PageLinkState pageLinkState;
+    private Person seeker;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApp.start();
+        pageLinkState = BenchmarkApp.pageLinkState(context);
+        seeker = context.getBean(PersonRepo.class).findByUsername(BenchmarkData.seekerUsername(0));
+
+        // the first call for a Person loads its counts from the db, every call after that is what's being measured
+        pageLinkState.of(seeker);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public NavBarState getPageLinkState() {
+        return pageLinkState.of(seeker);
+    }
+
+}
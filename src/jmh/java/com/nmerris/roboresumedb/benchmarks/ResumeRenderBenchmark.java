@@ -0,0 +1,69 @@
+package com.nmerris.roboresumedb.benchmarks;
+
+import com.nmerris.roboresumedb.Resume;
+import com.nmerris.roboresumedb.services.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+import org.thymeleaf.spring4.context.SpringWebContext;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thymeleaf rendering of finalresume.html for a seeker with a full resume.  The Resume is loaded up front, so this is
+ * only the template, no db.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResumeRenderBenchmark {
+
+    // application.properties turns the template cache off, this shows what that costs
+    @Param({"false", "true"})
+    public boolean templateCache;
+
+    private ConfigurableApplicationContext context;
+    private SpringTemplateEngine templateEngine;
+    private SpringWebContext webContext;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApp.start("--spring.thymeleaf.cache=" + templateCache);
+        templateEngine = context.getBean(SpringTemplateEngine.class);
+
+        // everything the template shows, loaded the same way GET /finalresume loads it
+        Resume resume = context.getBean(UserService.class).findResume(BenchmarkData.seekerUsername(0));
+
+        // same model as GET /finalresume
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("person", resume.getPerson());
+        variables.put("resume", resume);
+        variables.put("pageState", BenchmarkApp.pageLinkState(context).of(resume.getPerson()));
+
+        MockServletContext servletContext = new MockServletContext();
+        webContext = new SpringWebContext(new MockHttpServletRequest(servletContext), new MockHttpServletResponse(),
+                servletContext, Locale.US, variables, context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public String renderFinalResume() {
+        return templateEngine.process("finalresume", webContext);
+    }
+
+}
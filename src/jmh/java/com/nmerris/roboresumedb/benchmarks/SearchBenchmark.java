@@ -0,0 +1,93 @@
+package com.nmerris.roboresumedb.benchmarks;
+
+import com.nmerris.roboresumedb.ResultPage;
+import com.nmerris.roboresumedb.services.SearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every branch of POST /search, the first page and the page after it.  The search strings are picked to match a
+ * lot of rows (common prefix) and only a few (full names).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    // same values as the search form's type drop down
+    @Param({"people", "jobs", "companies", "schools"})
+    public String type;
+
+    // broad: a one letter prefix, narrow: two whole words
+    @Param({"broad", "narrow"})
+    public String selectivity;
+
+    private ConfigurableApplicationContext context;
+    private SearchIndex searchIndex;
+    private String searchString;
+    private String secondPage;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApp.start();
+        searchIndex = context.getBean(SearchIndex.class);
+
+        boolean broad = selectivity.equals("broad");
+        switch (type) {
+            case "people" :
+                searchString = broad ? "j" : "mary smith";
+                break;
+            case "jobs" :
+                searchString = broad ? "s" : "java developer";
+                break;
+            case "companies" :
+                searchString = broad ? "i" : "stark industries";
+                break;
+            case "schools" :
+                searchString = broad ? "u" : "george mason";
+                break;
+            default :
+                throw new IllegalArgumentException("unknown search type: " + type);
+        }
+
+        // also builds the index, which is not what's being measured
+        secondPage = search(null).getNextCursor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public ResultPage<?> firstPage() {
+        return search(null);
+    }
+
+    @Benchmark
+    public ResultPage<?> nextPage() {
+        return search(secondPage);
+    }
+
+
+    private ResultPage<?> search(String after) {
+        switch (type) {
+            case "people" :
+                return searchIndex.findPeople(searchString, after, null);
+            case "jobs" :
+                return searchIndex.findJobs(searchString, after, null);
+            case "companies" :
+                return searchIndex.findCompanies(searchString, after, null);
+            default :
+                return searchIndex.findSchools(searchString, after, null);
+        }
+    }
+
+}
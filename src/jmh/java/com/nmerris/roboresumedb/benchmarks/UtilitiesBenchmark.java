@@ -0,0 +1,35 @@
+package com.nmerris.roboresumedb.benchmarks;
+
+import com.nmerris.roboresumedb.Utilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utilities.getMonthDayYearFromDate, for a real date and for a missing end date ('Present').
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilitiesBenchmark {
+
+    private Date date = new GregorianCalendar(2017, 7, 21).getTime();
+    private Date noDate = null;
+
+
+    @Benchmark
+    public String withDate() {
+        return Utilities.getMonthDayYearFromDate(date);
+    }
+
+    @Benchmark
+    public String withoutDate() {
+        return Utilities.getMonthDayYearFromDate(noDate);
+    }
+
+}
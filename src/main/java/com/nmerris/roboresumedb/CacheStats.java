@@ -0,0 +1,35 @@
+package com.nmerris.roboresumedb;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// hits and misses of one of the in memory caches, shown on /metrics and /prometheus as cache.<name>.*
+public class CacheStats {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // hits / lookups, 0 until the first lookup
+    public double getHitRatio() {
+        return hitRatio(getHits(), getMisses());
+    }
+
+    public static double hitRatio(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
@@ -0,0 +1,33 @@
+package com.nmerris.roboresumedb;
+
+import com.nmerris.roboresumedb.models.Job;
+
+// one row in a job seeker's 'recommended jobs' list, see JobRecommendations
+public class JobRecommendation {
+
+    private Job job;
+
+    // number of the job's skills the seeker has at the posted rating or better
+    private int ratingMatches;
+
+    // number of the job's skills the seeker has at any rating
+    private int nameMatches;
+
+    public JobRecommendation(Job job, int ratingMatches, int nameMatches) {
+        this.job = job;
+        this.ratingMatches = ratingMatches;
+        this.nameMatches = nameMatches;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public int getRatingMatches() {
+        return ratingMatches;
+    }
+
+    public int getNameMatches() {
+        return nameMatches;
+    }
+}
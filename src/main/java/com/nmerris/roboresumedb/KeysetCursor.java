@@ -0,0 +1,47 @@
+package com.nmerris.roboresumedb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a row in a sorted result list: the sort key of the row plus its id, to break ties.  The next page is
+ * everything sorted after the last row of this page, so the db (or SearchIndex) can seek straight to it instead of
+ * counting past OFFSET rows.  Encoded as an opaque url safe string for next/previous links.
+ */
+public class KeysetCursor {
+
+    private final String sortKey;
+    private final long id;
+
+    public KeysetCursor(String sortKey, long id) {
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + sortKey).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // returns null if cursor is null, empty, or has been tampered with, which just means 'start at the first page'
+    public static KeysetCursor decode(String cursor) {
+        if(cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = decoded.indexOf(':');
+            return new KeysetCursor(decoded.substring(colon + 1), Long.parseLong(decoded.substring(0, colon)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
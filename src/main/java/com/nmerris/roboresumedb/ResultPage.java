@@ -0,0 +1,70 @@
+package com.nmerris.roboresumedb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// one page of search results or job postings, next/previous cursors are null when there is no next/previous page
+public class ResultPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+    private final String prevCursor;
+
+    public ResultPage(List<T> items, String nextCursor, String prevCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    /**
+     * Builds a page from rows fetched with a keyset query that asked for one more row than pageSize, the extra row
+     * (if it came back) just tells us there is another page beyond this one.
+     * @param fetched up to pageSize + 1 rows, already in display order
+     * @param backwards true if the rows were fetched going backwards from a 'before' cursor
+     * @param fromCursor true if the rows were fetched starting from a cursor, ie this is not the first page
+     * @param cursorOf encodes the cursor for a row
+     */
+    public static <T> ResultPage<T> of(List<T> fetched, int pageSize, boolean backwards, boolean fromCursor,
+                                       Function<T, String> cursorOf) {
+        List<T> items = new ArrayList<>(fetched);
+        boolean more = items.size() > pageSize;
+        if(more) {
+            // the extra row is always at the end furthest from the cursor
+            items.remove(backwards ? 0 : items.size() - 1);
+        }
+
+        // going backwards, there is always a next page, it's the one we just came from
+        boolean hasNext = backwards || more;
+        boolean hasPrev = backwards ? more : fromCursor;
+
+        String next = hasNext && !items.isEmpty() ? cursorOf.apply(items.get(items.size() - 1)) : null;
+        String prev = hasPrev && !items.isEmpty() ? cursorOf.apply(items.get(0)) : null;
+        return new ResultPage<>(items, next, prev);
+    }
+
+    // same page, same cursors, different items, used to swap ids for the entities they belong to
+    public <R> ResultPage<R> withItems(List<R> newItems) {
+        return new ResultPage<>(newItems, nextCursor, prevCursor);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public boolean getHasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean getHasPrev() {
+        return prevCursor != null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.nmerris.roboresumedb;
+
+import com.nmerris.roboresumedb.models.EducationAchievement;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.models.Skill;
+import com.nmerris.roboresumedb.models.WorkExperience;
+
+import java.util.Collection;
+import java.util.List;
+
+// everything on a job seeker's resume, all loaded up front by UserService.findResume, so the pages that show a whole
+// resume never touch a lazy collection while they render
+public class Resume {
+
+    private Person person;
+
+    private List<EducationAchievement> educationAchievements;
+
+    private List<WorkExperience> workExperiences;
+
+    // false if it was read from a replica, which may be a little behind, see ReplicaRouter
+    private boolean fromPrimary;
+
+    public Resume(Person person, List<EducationAchievement> educationAchievements,
+                  List<WorkExperience> workExperiences, boolean fromPrimary) {
+        this.person = person;
+        this.educationAchievements = educationAchievements;
+        this.workExperiences = workExperiences;
+        this.fromPrimary = fromPrimary;
+    }
+
+    public Person getPerson() {
+        return person;
+    }
+
+    public List<EducationAchievement> getEducationAchievements() {
+        return educationAchievements;
+    }
+
+    public List<WorkExperience> getWorkExperiences() {
+        return workExperiences;
+    }
+
+    public boolean isFromPrimary() {
+        return fromPrimary;
+    }
+
+    // loaded with the Person, see PersonRepo.findResumeByUsername
+    public Collection<Skill> getSkills() {
+        return person.getSkills();
+    }
+}
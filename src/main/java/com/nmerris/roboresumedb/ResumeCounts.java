@@ -0,0 +1,34 @@
+package com.nmerris.roboresumedb;
+
+// immutable snapshot of how many records a Person has in each resume section, see ResumeCounters
+public class ResumeCounts {
+
+    private final long numEdAchievements;
+    private final long numWorkExps;
+    private final long numSkills;
+
+    public ResumeCounts(long numEdAchievements, long numWorkExps, long numSkills) {
+        this.numEdAchievements = numEdAchievements;
+        this.numWorkExps = numWorkExps;
+        this.numSkills = numSkills;
+    }
+
+    // returns a new snapshot with each count changed by the given amount, counts never go below zero
+    public ResumeCounts plus(long edAchievements, long workExps, long skills) {
+        return new ResumeCounts(Math.max(0, numEdAchievements + edAchievements),
+                Math.max(0, numWorkExps + workExps),
+                Math.max(0, numSkills + skills));
+    }
+
+    public long getNumEdAchievements() {
+        return numEdAchievements;
+    }
+
+    public long getNumWorkExps() {
+        return numWorkExps;
+    }
+
+    public long getNumSkills() {
+        return numSkills;
+    }
+}
@@ -0,0 +1,33 @@
+package com.nmerris.roboresumedb;
+
+import com.nmerris.roboresumedb.models.Person;
+
+// one ranked row in the 'seekers who match this job' table, see SkillMatchIndex
+public class SkillMatch {
+
+    private Person person;
+
+    // number of the job's skills the seeker has at the posted rating or better
+    private int ratingMatches;
+
+    // number of the job's skills the seeker has at any rating
+    private int nameMatches;
+
+    public SkillMatch(Person person, int ratingMatches, int nameMatches) {
+        this.person = person;
+        this.ratingMatches = ratingMatches;
+        this.nameMatches = nameMatches;
+    }
+
+    public Person getPerson() {
+        return person;
+    }
+
+    public int getRatingMatches() {
+        return ratingMatches;
+    }
+
+    public int getNameMatches() {
+        return nameMatches;
+    }
+}
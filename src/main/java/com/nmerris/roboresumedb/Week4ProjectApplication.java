@@ -2,8 +2,10 @@ package com.nmerris.roboresumedb;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class Week4ProjectApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(Week4ProjectApplication.class, args);
@@ -0,0 +1,29 @@
+package com.nmerris.roboresumedb.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfiguration {
+
+    // runs the job seeker matching in the background, see JobMatchService
+    // fixed number of threads and a bounded queue, so a flood of job posts can't use up all the memory or db connections
+    @Bean
+    public ThreadPoolTaskExecutor jobMatchExecutor(@Value("${jobpro.match.threads:2}") int threads,
+                                                   @Value("${jobpro.match.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("job-match-");
+        // if the queue is full the match runs on the request thread, that recruiter waits a bit but nothing is lost
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+}
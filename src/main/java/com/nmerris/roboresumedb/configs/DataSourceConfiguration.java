@@ -0,0 +1,79 @@
+package com.nmerris.roboresumedb.configs;
+
+import com.nmerris.roboresumedb.services.ReplicaRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.bind.PropertySourcesPropertyValues;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// the primary db (spring.datasource.*) plus any read replicas (jobpro.datasource.*), see ReplicaRouter and
+// application.properties
+@Configuration
+public class DataSourceConfiguration {
+
+    @Autowired
+    ConfigurableEnvironment environment;
+
+    @Autowired
+    DataSourceProperties properties;
+
+    // the connection pools are inside this, not beans of their own, so the app has just the one DataSource below
+    @Bean
+    public ReplicaRouter replicaRouter(@Value("${jobpro.datasource.replica-urls:}") String[] replicaUrls,
+                                       @Value("${jobpro.datasource.max-replica-lag-ms:1000}") long maxLagMs,
+                                       @Value("${jobpro.datasource.replica-lag-query}") String lagQuery) {
+        Map<String, org.apache.tomcat.jdbc.pool.DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            String name = "replica" + (replicas.size() + 1);
+            replicas.put(name, newPool(name, url.trim()));
+        }
+        return new ReplicaRouter(newPool("primary", properties.determineUrl()), replicas, maxLagMs, lagQuery);
+    }
+
+    // what everything (hibernate, flyway, spring session) uses
+    @Bean
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        return new LazyConnectionDataSourceProxy(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return replicaRouter.getConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return replicaRouter.getConnection(username, password);
+            }
+        });
+    }
+
+
+    // the same pool boot would make from spring.datasource.* and spring.datasource.tomcat.*, with another url for the
+    // replicas, so every pool has the same user, password, size and jdbc interceptors (ie QueryCountingInterceptor)
+    private org.apache.tomcat.jdbc.pool.DataSource newPool(String name, String url) {
+        org.apache.tomcat.jdbc.pool.DataSource pool = (org.apache.tomcat.jdbc.pool.DataSource) properties
+                .initializeDataSourceBuilder().type(org.apache.tomcat.jdbc.pool.DataSource.class).url(url).build();
+        String validationQuery = DatabaseDriver.fromJdbcUrl(url).getValidationQuery();
+        if(validationQuery != null) {
+            pool.setTestOnBorrow(true);
+            pool.setValidationQuery(validationQuery);
+        }
+        new RelaxedDataBinder(pool, "spring.datasource.tomcat")
+                .bind(new PropertySourcesPropertyValues(environment.getPropertySources()));
+        pool.setName(name);
+        return pool;
+    }
+
+}
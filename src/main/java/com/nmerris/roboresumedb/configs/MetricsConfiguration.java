@@ -0,0 +1,169 @@
+package com.nmerris.roboresumedb.configs;
+
+import com.nmerris.roboresumedb.CacheStats;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import com.nmerris.roboresumedb.services.*;
+import io.prometheus.client.Summary;
+import io.prometheus.client.spring.boot.EnablePrometheusEndpoint;
+import io.prometheus.client.spring.boot.EnableSpringBootMetricsCollector;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// everything on /metrics is also on /prometheus (names with every . and / turned into _), along with the latency
+// summaries in LatencyMetrics
+@Configuration
+@EnablePrometheusEndpoint
+@EnableSpringBootMetricsCollector
+public class MetricsConfiguration {
+
+    // hibernate second level and query cache hits and misses, shown on /metrics as hibernate.cache.<region>.* and
+    // hibernate.query-cache.*, where region is the entity name (ie Role, Skill)
+    @Bean
+    public PublicMetrics hibernateCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return () -> {
+            List<Metric<?>> metrics = new ArrayList<>();
+            for (String region : statistics.getSecondLevelCacheRegionNames()) {
+                SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+                String prefix = "hibernate.cache." + region.substring(region.lastIndexOf('.') + 1) + ".";
+                metrics.add(new Metric<>(prefix + "hits", regionStatistics.getHitCount()));
+                metrics.add(new Metric<>(prefix + "misses", regionStatistics.getMissCount()));
+                metrics.add(new Metric<>(prefix + "puts", regionStatistics.getPutCount()));
+                metrics.add(new Metric<>(prefix + "size", regionStatistics.getElementCountInMemory()));
+                metrics.add(new Metric<>(prefix + "hit-ratio",
+                        CacheStats.hitRatio(regionStatistics.getHitCount(), regionStatistics.getMissCount())));
+            }
+            metrics.add(new Metric<>("hibernate.query-cache.hits", statistics.getQueryCacheHitCount()));
+            metrics.add(new Metric<>("hibernate.query-cache.misses", statistics.getQueryCacheMissCount()));
+            metrics.add(new Metric<>("hibernate.query-cache.puts", statistics.getQueryCachePutCount()));
+            metrics.add(new Metric<>("hibernate.query-cache.hit-ratio",
+                    CacheStats.hitRatio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount())));
+            return metrics;
+        };
+    }
+
+    // sql run by each route, shown on /metrics as sql.<route>.*, ie sql.GET /finalresume.queries, see QueryStats
+    // queries/rows/time-ms are totals since startup, divide by requests for the average, max-queries is the most any
+    // single request ran
+    @Bean
+    public PublicMetrics queryMetrics(QueryStats queryStats) {
+        return () -> {
+            List<Metric<?>> metrics = new ArrayList<>();
+            for (Map.Entry<String, QueryStats.RouteTotals> route : queryStats.getTotals().entrySet()) {
+                String prefix = "sql." + route.getKey() + ".";
+                QueryStats.RouteTotals totals = route.getValue();
+                metrics.add(new Metric<>(prefix + "requests", totals.getRequests()));
+                metrics.add(new Metric<>(prefix + "queries", totals.getQueries()));
+                metrics.add(new Metric<>(prefix + "max-queries", totals.getMaxQueries()));
+                metrics.add(new Metric<>(prefix + "rows", totals.getRows()));
+                metrics.add(new Metric<>(prefix + "time-ms", totals.getMillis()));
+            }
+            return metrics;
+        };
+    }
+
+    // the app's own caches, shown on /metrics as cache.<name>.hits/misses/hit-ratio
+    @Bean
+    public PublicMetrics appCacheMetrics(ResumeCache resumeCache, UserDetailsCache userDetailsCache,
+                                         ResumeCounters resumeCounters) {
+        Map<String, CacheStats> caches = new LinkedHashMap<>();
+        caches.put("resume-pages", resumeCache.getStats());
+        caches.put("user-details", userDetailsCache.getStats());
+        caches.put("resume-counts", resumeCounters.getStats());
+        return () -> {
+            List<Metric<?>> metrics = new ArrayList<>();
+            for (Map.Entry<String, CacheStats> cache : caches.entrySet()) {
+                String prefix = "cache." + cache.getKey() + ".";
+                metrics.add(new Metric<>(prefix + "hits", cache.getValue().getHits()));
+                metrics.add(new Metric<>(prefix + "misses", cache.getValue().getMisses()));
+                metrics.add(new Metric<>(prefix + "hit-ratio", cache.getValue().getHitRatio()));
+            }
+            return metrics;
+        };
+    }
+
+    // each connection pool, the primary and every read replica, shown on /metrics as pool.<name>.active/idle/max/
+    // waiting/borrowed, waiting is how many threads are waiting for a connection right now
+    // plus replica.<name>.lag-ms/usable from the last lag check, and how many read only service transactions went to
+    // a replica or had to use the primary, see ReplicaRouter
+    @Bean
+    public PublicMetrics dataSourceMetrics(ReplicaRouter replicaRouter) {
+        return () -> {
+            List<Metric<?>> metrics = new ArrayList<>();
+            for (Map.Entry<String, DataSource> pool : replicaRouter.getPools().entrySet()) {
+                String prefix = "pool." + pool.getKey() + ".";
+                metrics.add(new Metric<>(prefix + "active", pool.getValue().getActive()));
+                metrics.add(new Metric<>(prefix + "idle", pool.getValue().getIdle()));
+                metrics.add(new Metric<>(prefix + "max", pool.getValue().getMaxActive()));
+                metrics.add(new Metric<>(prefix + "waiting", pool.getValue().getWaitCount()));
+                metrics.add(new Metric<>(prefix + "borrowed", pool.getValue().getBorrowedCount()));
+            }
+            for (ReplicaRouter.Replica replica : replicaRouter.getReplicas()) {
+                String prefix = "replica." + replica.getName() + ".";
+                metrics.add(new Metric<>(prefix + "lag-ms", replica.getLagMs()));
+                metrics.add(new Metric<>(prefix + "usable", replica.isUsable() ? 1 : 0));
+            }
+            metrics.add(new Metric<>("reads.replica", replicaRouter.getReplicaReads()));
+            metrics.add(new Metric<>("reads.primary-fallback", replicaRouter.getFallbackReads()));
+            return metrics;
+        };
+    }
+
+    // times every call to every repository method into LatencyMetrics.REPOSITORIES, labelled with the repository
+    // interface and method name, ie {repository="PersonRepo", method="findByUsername"}
+    // spring data repositories are already aop proxies, so the timer is just added as their outermost advice
+    // static so this post processor doesn't need the rest of this class created early
+    @Bean
+    public static BeanPostProcessor repositoryTimer() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(bean instanceof Repository && bean instanceof Advised) {
+                    String repository = repositoryName((Advised) bean);
+                    ((Advised) bean).addAdvice(0, (MethodInterceptor) invocation -> {
+                        Summary.Timer timer = LatencyMetrics.REPOSITORIES
+                                .labels(repository, invocation.getMethod().getName()).startTimer();
+                        try {
+                            return invocation.proceed();
+                        } finally {
+                            timer.observeDuration();
+                        }
+                    });
+                }
+                return bean;
+            }
+        };
+    }
+
+    // the app's own interface, ie PersonRepo, not CrudRepository
+    private static String repositoryName(Advised repository) {
+        for (Class<?> type : repository.getProxiedInterfaces()) {
+            if(type.getPackage().equals(PersonRepo.class.getPackage())) {
+                return type.getSimpleName();
+            }
+        }
+        return repository.getTargetClass().getSimpleName();
+    }
+
+}
@@ -1,12 +1,12 @@
 package com.nmerris.roboresumedb.configs;
 
-import com.nmerris.roboresumedb.repositories.PersonRepo;
 import com.nmerris.roboresumedb.services.SSUserDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -20,16 +20,19 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Autowired
     private SSUserDetailsService userDetailsService;
 
-    @Autowired
-    private PersonRepo personRepo;
-
-
+    // use the SSUserDetailsService bean, not a new one, so logins share its UserDetailsCache
     @Override
     public UserDetailsService userDetailsServiceBean() throws Exception {
-        return new SSUserDetailsService(personRepo);
+        return userDetailsService;
     }
 
 
+    // static files skip spring security completely, so they never load the login session from the db
+    @Override
+    public void configure(WebSecurity web) throws Exception {
+        web.ignoring().antMatchers("/css/**", "/js/**", "/fonts/**", "/img/**");
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
 
@@ -55,10 +58,11 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                 .antMatchers("/summary", "/search", "/addperson", "/delete/**", "/update/**")
                     .access("hasRole('ROLE_USER') or hasRole('ROLE_RECRUITER')")
 
-                .antMatchers("/startover", "/addeducation", "/addworkexperience", "/addskill", "/editdetails", "/finalresume")
+                .antMatchers("/startover", "/addeducation", "/addworkexperience", "/addskill", "/editdetails", "/finalresume",
+                        "/recommendedjobs")
                     .access("hasRole('ROLE_USER')")
 
-                .antMatchers("/joblist", "/addjob")
+                .antMatchers("/joblist", "/addjob", "/deletejobs", "/jobmatches/**")
                     .access("hasRole('ROLE_RECRUITER')")
 
                 .anyRequest().authenticated();
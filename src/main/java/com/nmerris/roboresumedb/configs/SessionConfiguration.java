@@ -0,0 +1,73 @@
+package com.nmerris.roboresumedb.configs;
+
+import com.nmerris.roboresumedb.services.LazySessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcOperationsSessionRepository;
+
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// http sessions live in whichever store spring.session.store-type picks (jdbc normally, hash_map in the tests), see
+// application.properties.  only the sessions, the in memory caches are kept in step across instances by CacheSync
+@Configuration
+public class SessionConfiguration {
+
+    // every session store gets wrapped in a LazySessionRepository, and the jdbc one also deflates each attribute it
+    // stores, a logged in user's security context goes from about 1.3KB to about 650 bytes
+    @Bean
+    @SuppressWarnings("unchecked")
+    public static BeanPostProcessor lazySessionRepository(@Value("${jobpro.session.touch-ms:60000}") long touchMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(bean instanceof JdbcOperationsSessionRepository) {
+                    ((JdbcOperationsSessionRepository) bean).setConversionService(deflatingConversionService());
+                }
+                if(bean instanceof SessionRepository && !(bean instanceof LazySessionRepository)) {
+                    return new LazySessionRepository((SessionRepository<ExpiringSession>) bean, touchMs);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // plain java serialization, deflated
+    private static GenericConversionService deflatingConversionService() {
+        ClassLoader classLoader = SessionConfiguration.class.getClassLoader();
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, new SerializingConverter((object, out) -> {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater);
+                new DefaultSerializer().serialize(object, deflated);
+                deflated.finish();
+            } finally {
+                deflater.end();
+            }
+        }));
+        conversionService.addConverter(byte[].class, Object.class, new DeserializingConverter((InputStream in) -> {
+            try (InflaterInputStream inflated = new InflaterInputStream(in)) {
+                return new DefaultDeserializer(classLoader).deserialize(inflated);
+            }
+        }));
+        return conversionService;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.nmerris.roboresumedb.configs;
+
+import com.nmerris.roboresumedb.services.LatencyMetrics;
+import com.nmerris.roboresumedb.services.QueryStats;
+import com.nmerris.roboresumedb.services.ReplicaRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.security.Principal;
+
+@Configuration
+public class WebConfiguration extends WebMvcConfigurerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(WebConfiguration.class);
+
+    private static final String START_ATTRIBUTE = WebConfiguration.class.getName() + ".start";
+
+    // when the logged in user last wrote something, kept in the session so every app instance knows
+    private static final String LAST_WRITE_ATTRIBUTE = WebConfiguration.class.getName() + ".lastWrite";
+
+    @Autowired
+    QueryStats queryStats;
+
+    @Autowired
+    ReplicaRouter replicaRouter;
+
+    // for this long (ms) after a user writes, their reads go to the primary instead of a replica that may not have
+    // the change yet, longer than the replicas are ever allowed to be behind
+    @Value("${jobpro.datasource.read-your-writes-ms:5000}")
+    long readYourWritesMs;
+
+    // times each request and counts the sql it runs against its route, ie "GET /update/{id}", see LatencyMetrics and
+    // QueryStats, and at debug logs one line per request with all of that
+    // the logged in username is put in the MDC so every log line written while handling the request shows it
+    // and if there are read replicas, a user that just wrote something reads it back from the primary
+    // afterCompletion runs after the view is rendered, and even if the controller threw
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptorAdapter() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+                Principal principal = request.getUserPrincipal();
+                if(principal != null) {
+                    MDC.put("user", principal.getName());
+                }
+                ReplicaRouter.startRequest(wroteRecently(request));
+                queryStats.start();
+                return true;
+            }
+
+            // before the view is rendered, so it's in the session before a redirect after a write is followed
+            @Override
+            public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                   ModelAndView modelAndView) {
+                HttpSession session = request.getSession(false);
+                if(session != null && replicaRouter.hasReplicas()
+                        && ReplicaRouter.wroteInRequest()) {
+                    session.setAttribute(LAST_WRITE_ATTRIBUTE, System.currentTimeMillis());
+                }
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                String route = String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+                long nanos = System.nanoTime() - (Long) request.getAttribute(START_ATTRIBUTE);
+                LatencyMetrics.ROUTES.labels(request.getMethod(), route).observe(nanos / 1e9);
+                QueryStats.Counts counts = queryStats.stop(request.getMethod() + " " + route);
+                if(counts != null && log.isDebugEnabled()) {
+                    log.debug("{} {} status={} ms={} queries={} rows={} sql_ms={}", request.getMethod(), route,
+                            response.getStatus(), nanos / 1000000, counts.getQueries(), counts.getRows(),
+                            counts.getMillis());
+                }
+                MDC.remove("user");
+                ReplicaRouter.endRequest();
+            }
+        }).excludePathPatterns("/css/**", "/js/**", "/fonts/**", "/img/**");
+    }
+
+    private boolean wroteRecently(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if(session == null || !replicaRouter.hasReplicas()) {
+            return false;
+        }
+        Long lastWrite = (Long) session.getAttribute(LAST_WRITE_ATTRIBUTE);
+        return lastWrite != null && System.currentTimeMillis() - lastWrite < readYourWritesMs;
+    }
+
+}
@@ -1,20 +1,43 @@
 package com.nmerris.roboresumedb.controllers;
 
+import com.nmerris.roboresumedb.JobRecommendation;
 import com.nmerris.roboresumedb.NavBarState;
+import com.nmerris.roboresumedb.Resume;
+import com.nmerris.roboresumedb.ResultPage;
+import com.nmerris.roboresumedb.ResumeCounts;
 import com.nmerris.roboresumedb.Utilities;
 import com.nmerris.roboresumedb.models.*;
 import com.nmerris.roboresumedb.repositories.*;
+import com.nmerris.roboresumedb.services.CacheSync;
+import com.nmerris.roboresumedb.services.CurrentPersonResolver;
+import com.nmerris.roboresumedb.services.JobMatchService;
+import com.nmerris.roboresumedb.services.JobRecommendations;
+import com.nmerris.roboresumedb.services.JobService;
+import com.nmerris.roboresumedb.services.ReplicaRouter;
+import com.nmerris.roboresumedb.services.ResumeCache;
+import com.nmerris.roboresumedb.services.ResumeChanges;
+import com.nmerris.roboresumedb.services.ResumeCounters;
+import com.nmerris.roboresumedb.services.SearchIndex;
+import com.nmerris.roboresumedb.services.SkillCatalog;
 import com.nmerris.roboresumedb.services.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.method.P;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.*;
 
@@ -22,6 +45,8 @@ import java.util.*;
 @Controller
 public class MainController {
 
+    private static final Logger log = LoggerFactory.getLogger(MainController.class);
+
     @Autowired
     PersonRepo personRepo;
     @Autowired
@@ -38,6 +63,45 @@ public class MainController {
     @Autowired
     UserService userService;
 
+    @Autowired
+    JobService jobService;
+
+    // matches job seekers to newly posted jobs in the background
+    @Autowired
+    JobMatchService jobMatchService;
+
+    // jobs that fit a job seeker's skills, ranked and cached per seeker
+    @Autowired
+    JobRecommendations jobRecommendations;
+
+    // request scoped, loads the logged in Person once per request no matter how many times it's asked for
+    @Autowired
+    CurrentPersonResolver currentPerson;
+
+    // running ed/work/skill counts for each Person, so the navbar doesn't have to query the db
+    @Autowired
+    ResumeCounters resumeCounters;
+
+    // full text index used by /search, must be told about every save/delete of a Person, Job, or EducationAchievement
+    @Autowired
+    SearchIndex searchIndex;
+
+    // in memory copy of the skill table, the list of skills rarely changes so there's no need to query it every time
+    @Autowired
+    SkillCatalog skillCatalog;
+
+    // rendered final resume pages, must be told about every change to a resume
+    @Autowired
+    ResumeCache resumeCache;
+
+    // tells the other app instances about every change the caches above were told about
+    @Autowired
+    CacheSync cacheSync;
+
+    // tells all of the caches above about a change to a Person's details or resume
+    @Autowired
+    ResumeChanges resumeChanges;
+
 
     @GetMapping("/login")
     public String login(Model model) {
@@ -53,21 +117,20 @@ public class MainController {
 
     @GetMapping("/summary")
     public String summary(Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /summary GET");
-        System.out.println("=========================================== Principal.getName (username): " + principal.getName());
-        System.out.println("=========================================== personRepo.findByUserName.getUsername: " + personRepo.findByUsername(principal.getName()).getUsername());
-        System.out.println("=========================================== personRepo.findByUserName.getRole: " + personRepo.findByUsername(principal.getName()).getRole());
-
         // show them a summary page based on their role
-        switch(personRepo.findByUsername(principal.getName()).getRole()) {
+        switch(currentPerson.get(principal).getRole()) {
             case "ROLE_USER" :
 
                 return "redirect:/editdetails";
 
             case "ROLE_RECRUITER" :
 
-                model.addAttribute("message", personRepo.findByUsername(principal.getName()).getFullName() + "'s job postings");
-                model.addAttribute("person", personRepo.findByUsername(principal.getName()));
+                model.addAttribute("message", currentPerson.get(principal).getFullName() + "'s job postings");
+                model.addAttribute("person", currentPerson.get(principal));
+                // first page of postings, the page has links to /joblist for the rest
+                ResultPage<Job> jobs = jobService.findPostings(currentPerson.get(principal), null, null);
+                model.addAttribute("jobs", jobs);
+                model.addAttribute("matchCounts", jobMatchService.countMatches(jobs.getItems()));
                 model.addAttribute("highLightPostJob", false);
                 model.addAttribute("highLightPostList", true);
                 model.addAttribute("highLightSearch", false);
@@ -110,13 +173,13 @@ public class MainController {
                                       BindingResult bindingResult, Model model,
                                       @RequestParam(value = "selectedRole") String role) {
 
-        System.out.println("####################### /register POST... incoming role String is: " + role);
+        log.debug("registering username={} role={}", user.getUsername(), role);
 
         // always add the incoming user back to the model
         model.addAttribute("newPerson", user);
 
         if(bindingResult.hasErrors()) {
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!) BINDING RESULT ERROR");
+            log.debug("form has errors: {}", bindingResult.getAllErrors());
 
             if(personRepo.countByUsername(user.getUsername()) > 0) {
                 // in addition to other validation errors, the selected username already exists, so display
@@ -157,10 +220,8 @@ public class MainController {
 
     @GetMapping("/search")
     public String searchGet(Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /search GET");
-
 
-        if(personRepo.findByUsername(principal.getName()).getRole().equals("ROLE_USER")) {
+        if(currentPerson.get(principal).getRole().equals("ROLE_USER")) {
             model.addAttribute("navType", "user");
         }
         else {
@@ -172,7 +233,7 @@ public class MainController {
         // it ALWAYS rendered ROLE_USER, no matter what
 //        switch(personRepo.findByUsername(principal.getName()).getRole()) {
 //            case "ROLE_USER" :
-                model.addAttribute("pageState", getPageLinkState(personRepo.findByUsername(principal.getName())));
+                model.addAttribute("pageState", getPageLinkState(currentPerson.get(principal)));
 //                return "searchuser";
 //
 //            case "ROLE_RECRUITER" :
@@ -189,17 +250,17 @@ public class MainController {
     @PostMapping("/search")
     public String searchPost(Model model, Principal principal,
                              @RequestParam(value = "type", required = false) String type,
-                             @RequestParam(value = "searchString", required = false) String searchString) {
-        System.out.println("=============================================================== just entered /search POST");
-        System.out.println("============================================== search type: " + type);
-        System.out.println("============================================== search string: " + searchString);
+                             @RequestParam(value = "searchString", required = false) String searchString,
+                             @RequestParam(value = "after", required = false) String after,
+                             @RequestParam(value = "before", required = false) String before) {
+        log.debug("search type={} searchString={}", type, searchString);
 
-        model.addAttribute("pageState", getPageLinkState(personRepo.findByUsername(principal.getName())));
+        model.addAttribute("pageState", getPageLinkState(currentPerson.get(principal)));
 
 
         // add the navbar state object to the model if logged in role is USER
         // note: the recruiter navbar does not need any fancy state object
-        if(personRepo.findByUsername(principal.getName()).getRole().equals("ROLE_USER")) {
+        if(currentPerson.get(principal).getRole().equals("ROLE_USER")) {
 //            model.addAttribute("pageState", getPageLinkState(personRepo.findByUsername(principal.getName())));
             model.addAttribute("navType", "user");
         }
@@ -209,57 +270,43 @@ public class MainController {
 
         // display msg if user entered nothing and then clicked submit
         if(searchString.equals("")) {
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! found empty search string");
             model.addAttribute("emptySearchString", true);
             return "search";
         }
 
 
 
+        // the next/previous page buttons need to repeat the same search
+        model.addAttribute("type", type);
+        model.addAttribute("searchString", searchString);
+
+        // every word entered must match the start of a word in the searched field(s), best matches first
+        // only one page of results is loaded, after/before are the cursors from the next/previous page buttons
         switch (type) {
             case "people" :
-                // split the string into parts, separate by space
-                String[] parts = searchString.split(" ");
-                LinkedHashSet<Person> searchResults;
-
-                // if user entered more than 2 parts, for now we will just display msg saying they can't do that
-                if(parts.length > 2) {
-                    System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! more than 2 names entered");
-                    model.addAttribute("tooManyNames", true);
-                    return  "search";
-                }
-
-
-                // user entered either a first or last name, we don't know which, so query db by both
-                if(parts.length == 1) {
-                    searchResults = personRepo.findByNameFirstIsOrNameLastIsOrderByNameLastAsc(searchString, searchString);
-                    System.out.println("================== parts.length was 1... searchResults.size: " + searchResults.size());
-                }
-                else {
-                    // user must have entered exactly 2 names, assume first  one entered was first name, second was last name
-                    searchResults = personRepo.findByNameFirstIsAndNameLastIsOrderByNameLastAsc(parts[0], parts[1]);
-                    System.out.println("================== parts.length was 2... searchResults.size: " + searchResults.size());
-                }
+                // search both first and last names, so the user can enter either one or both, in any order
+                ResultPage<Person> searchResults = searchIndex.findPeople(searchString, after, before);
+                log.debug("people search found {} results", searchResults.getItems().size());
 
                 model.addAttribute("searchResults", searchResults);
                 model.addAttribute("tableType", "person");
                 break;
 
             case "jobs" :
-                // find all jobs that have title fields that contain the search string
-                model.addAttribute("searchResults", jobRepo.findByTitleContainingOrderByTitleAsc(searchString));
+                // find all jobs that have title (or description) fields that contain the search words
+                model.addAttribute("searchResults", searchIndex.findJobs(searchString, after, before));
                 model.addAttribute("tableType", "job");
                 break;
 
             case "companies" :
-                // find all jobs that have company fields that contain the search string
-                model.addAttribute("searchResults", jobRepo.findByEmployerContainingOrderByEmployerAsc(searchString));
+                // find all jobs that have company fields that contain the search words
+                model.addAttribute("searchResults", searchIndex.findCompanies(searchString, after, before));
                 model.addAttribute("tableType", "company");
                 break;
 
             case "schools" :
-                // find all eds that have school name fields that contain the search string
-                model.addAttribute("searchResults", educationRepo.findBySchoolContainsOrderBySchoolAsc(searchString));
+                // find all eds that have school name fields that contain the search words
+                model.addAttribute("searchResults", searchIndex.findSchools(searchString, after, before));
                 model.addAttribute("tableType", "school");
 
         }
@@ -269,44 +316,50 @@ public class MainController {
 
 
 
+    // jobs that fit the job seeker's skills, best fit first, only used by job seekers
+    // after/before are cursors from the next/previous links, if neither is present the first page is shown
+    @GetMapping("/recommendedjobs")
+    public String recommendedJobsGet(Model model, Principal principal,
+                                     @RequestParam(value = "after", required = false) String after,
+                                     @RequestParam(value = "before", required = false) String before) {
+        Person p = currentPerson.get(principal);
+        ResultPage<JobRecommendation> recommendations = jobRecommendations.findPage(p, after, before);
+        model.addAttribute("recommendations", recommendations);
+        model.addAttribute("firstAndLastName", p.getFullName());
+        model.addAttribute("pageState", getPageLinkState(p));
+
+        return "recommendedjobs";
+    }
+
+
+
     // wipes all the skills, work experiences, and eds from current Person, only used by job seekers
     @GetMapping("/startover")
-    // Transactional is necessary to call removeAllBy.. on the repos
-    // PersistenceContext defaults to PersistenceContextType.TRANSACTION, thank you Stack Overflow!
-    @Transactional
     public String startOver(Principal principal) {
-        // remove all items from Person
-        Person p = personRepo.findByUsername(principal.getName());
-        p.removeAllEdAchievements();
-        p.removeAllWorkExperiences();
-        p.removeAllSkills();
-
-        // remove all items from repos
-        educationRepo.removeAllByMyPersonIs(p);
-        workExperienceRepo.removeAllByMyPersonIs(p);
+        Person p = currentPerson.get(principal);
+        // a few bulk statements in one transaction, see UserService.startOver
+        userService.startOver(p);
 
-        // remove this Person from each Skill associated with this Person
-        for (Skill skill : p.getSkills()) {
-            skill.removePerson(p);
-        }
-        // remove all this Persons skills
-        p.getSkills().clear();
-        // save this Person, now should have not eds, workExps, or skills
-        personRepo.save(p);
+        // committed, now reset everything in memory that knew about the old resume
+        resumeChanges.startedOver(p);
+        currentPerson.invalidate();
 
         return "redirect:/editdetails";
     }
 
 
+    // after/before are cursors from the next/previous links, if neither is present the first page is shown
     @GetMapping("/joblist")
-    public String jobListGet(Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /joblist GET");
-        System.out.println("=========================================== principal.getName: " + principal.getName());
-
+    public String jobListGet(Model model, Principal principal,
+                             @RequestParam(value = "after", required = false) String after,
+                             @RequestParam(value = "before", required = false) String before) {
 
 //        model.addAttribute("jobs", jobRepo.findAllByMyPersonIs(personRepo.findByUsername(principal.getName())));
         model.addAttribute("message", "Your job postings");
-        model.addAttribute("person", personRepo.findByUsername(principal.getName()));
+        model.addAttribute("person", currentPerson.get(principal));
+        ResultPage<Job> jobs = jobService.findPostings(currentPerson.get(principal), after, before);
+        model.addAttribute("jobs", jobs);
+        model.addAttribute("matchCounts", jobMatchService.countMatches(jobs.getItems()));
 
         model.addAttribute("highLightPostJob", false);
         model.addAttribute("highLightPostList", true);
@@ -316,25 +369,26 @@ public class MainController {
     }
 
 
+    // deletes every job the recruiter checked in the job postings list, see JobService.deletePostings
+    // nothing checked is fine, the list is just shown again
+    @PostMapping("/deletejobs")
+    public String deleteJobsPost(@RequestParam(value = "jobIds", required = false) List<Long> jobIds, Principal principal) {
+        jobService.deletePostings(currentPerson.get(principal), jobIds);
+        currentPerson.invalidate();
+
+        return "redirect:/summary";
+    }
+
+
     @GetMapping("/addjob")
     public String addJobGet(Model model) {
-        System.out.println("=============================================================== just entered /addJob GET");
-
         model.addAttribute("newJob", new Job());
         model.addAttribute("highLightPostJob", true);
         model.addAttribute("highLightPostList", false);
         model.addAttribute("highLightSearch", false);
 
-        // make a Set of skill names, no duplicates in a set, user can pick from these, and also pick a rating
-        Set<String> skillNames = new LinkedHashSet<>();
-//        Set<String> skillNames = new HashSet<>();
-        skillNames.add("None Selected");
-
-        for (Skill skill : skillRepo.findAllByOrderBySkillAsc()) {
-            skillNames.add(skill.getSkill());
-        }
-
-        model.addAttribute("skillNames", skillNames);
+        // list of distinct skill names, user can pick from these, and also pick a rating
+        model.addAttribute("skillNames", jobSkillNames());
 
         return "addjob";
     }
@@ -350,62 +404,50 @@ public class MainController {
                              @RequestParam(value = "ratingOne", required = false) String ratingOne,
                              @RequestParam(value = "ratingTwo", required = false) String ratingTwo,
                              @RequestParam(value = "ratingThree", required = false) String ratingThree) {
-        System.out.println("=============================================================== just entered /addJob POST");
-        System.out.println("============ selectedSkillNameOne: " + selectedSkillNameOne);
-        System.out.println("======= ratingOne: " + ratingOne);
-        System.out.println("============ selectedSkillNameTwo: " + selectedSkillNameTwo);
-        System.out.println("======= ratingTwo: " + ratingTwo);
-        System.out.println("============ selectedSkillNameThree: " + selectedSkillNameThree);
-        System.out.println("======= ratingThree: " + ratingThree);
-
+        log.debug("job skills {}/{}, {}/{}, {}/{}", selectedSkillNameOne, ratingOne,
+                selectedSkillNameTwo, ratingTwo, selectedSkillNameThree, ratingThree);
 
         if(bindingResult.hasErrors()) {
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!) BINDING RESULT ERROR");
+            log.debug("form has errors: {}", bindingResult.getAllErrors());
 
             model.addAttribute("highLightPostJob", true);
             model.addAttribute("highLightPostList", false);
             model.addAttribute("highLightSearch", false);
 
-            // make a Set of skill names, no duplicates in a set, user can pick from these, and also pick a rating
-            Set<String> skillNames = new LinkedHashSet<>();
-            skillNames.add("None Selected");
-
-            for (Skill skill : skillRepo.findAllByOrderBySkillAsc()) {
-                skillNames.add(skill.getSkill());
-            }
-
-            model.addAttribute("skillNames", skillNames);
+            // list of distinct skill names, user can pick from these, and also pick a rating
+            model.addAttribute("skillNames", jobSkillNames());
             return "addjob";
         }
 
 
+        SkillCatalog.Snapshot skills = skillCatalog.get();
         if(!selectedSkillNameOne.equals("None Selected")) {
-            job.addSkill(skillRepo.findBySkillIsAndRatingIs(selectedSkillNameOne, ratingOne));
+            job.addSkill(skills.find(selectedSkillNameOne, ratingOne));
         }
         if(!selectedSkillNameTwo.equals("None Selected")) {
-            job.addSkill(skillRepo.findBySkillIsAndRatingIs(selectedSkillNameTwo, ratingTwo));
+            job.addSkill(skills.find(selectedSkillNameTwo, ratingTwo));
         }
         if(!selectedSkillNameThree.equals("None Selected")) {
-            job.addSkill(skillRepo.findBySkillIsAndRatingIs(selectedSkillNameThree, ratingThree));
+            job.addSkill(skills.find(selectedSkillNameThree, ratingThree));
         }
         
         
-        job.setMyPerson(personRepo.findByUsername(principal.getName()));
+        job.setMyPerson(currentPerson.get(principal));
+        // saving (or editing) a job always means it has to be matched again
+        job.setMatchedAt(null);
         jobRepo.save(job);
+        searchIndex.indexJob(job);
+        cacheSync.jobChanged(job.getId());
+        currentPerson.invalidate();
 
 
-        // get a list of all job seekers who have any skills that match this job's skill(s)
+        // the best matching job seekers are found in the background, the confirmation page polls for them
         // note a job may have no skills
-        Role roleUser = roleRepo.findByRole("ROLE_USER");
-        LinkedHashSet<Person> matchedSeekers = new LinkedHashSet<>();
-        for (Skill skill : job.getSkills()) {
-            matchedSeekers.addAll(personRepo.findBySkillsIsAndRolesIs(skill, roleUser));
-        }
-        System.out.println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%% matchedSeekers.size: " + matchedSeekers.size());
-        model.addAttribute("peopleWithMatchedSkills", matchedSeekers);
+        jobMatchService.matchLater(job.getId());
+        addJobMatches(model, job, true);
 
 
-        model.addAttribute("jobJustAdded", jobRepo.findOne(job.getId()));
+        model.addAttribute("jobJustAdded", job);
         model.addAttribute("highLightPostJob", true);
         model.addAttribute("highLightPostList", false);
         model.addAttribute("highLightSearch", false);
@@ -416,37 +458,61 @@ public class MainController {
 
 
 
+    // a job and the job seekers that were matched to it, the same page that's shown right after posting a job
+    @GetMapping("/jobmatches/{id}")
+    public String jobMatchesGet(@PathVariable("id") long id, Model model, Principal principal) {
+        Job job = jobService.findPosting(currentPerson.get(principal), id);
+        if(job == null) {
+            return "redirect:/summary";
+        }
+
+        addJobMatches(model, job, jobMatchService.isMatching(job));
+        model.addAttribute("jobJustAdded", job);
+        model.addAttribute("highLightPostJob", false);
+        model.addAttribute("highLightPostList", true);
+        model.addAttribute("highLightSearch", false);
+
+        return "addjobconfirmation";
+    }
+
+    // just the matches table, addjobconfirmation.html polls this until matching is done
+    @GetMapping("/jobmatches/{id}/results")
+    public String jobMatchResultsGet(@PathVariable("id") long id, Model model, Principal principal) {
+        Job job = jobService.findPosting(currentPerson.get(principal), id);
+        if(job == null) {
+            return "redirect:/summary";
+        }
+
+        addJobMatches(model, job, jobMatchService.isMatching(job));
+        return "addjobconfirmation :: matches";
+    }
+
+
+
     @PostMapping("/addperson")
     public String addPersonPost(@Valid @ModelAttribute("newPerson") Person personFromForm,
                                 BindingResult bindingResult, Model model, Principal principal, Authentication auth) {
-        System.out.println("=============================================================== just entered /addperson POST");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
-//        Person p = personRepo.findByUsername(principal.getName());
 
         // return the same view (now with validation error messages) if there were any validation problems
         if(bindingResult.hasErrors()) {
             // always need to set up the navbar, every time a view is returned
-            NavBarState pageState = getPageLinkState(personFromForm);
+            // the counts are the user's own, not whatever Person the form sent back
+            NavBarState pageState = getPageLinkState(currentPerson.get(principal));
             pageState.setHighlightPersonNav(true);
             model.addAttribute("pageState", pageState);
             return "addperson";
         }
 
-//        p.setNameFirst(personFromForm.getNameFirst());
-//        p.setNameLast(personFromForm.getNameLast());
-//        p.setEmail(personFromForm.getEmail());
-
-        // ugly business here... need a better way to to do this...
-        // the parent relationship data is lost when the Person comes back from the form, so need to reattach is all
-        // here or it goes poof (and would loose skills and roles)
-
-//        Set<Role> rolesToPreserve = roleRepo.findAllByPersonsIs(personFromForm);
-//        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! got these roles for personFromForm: " + rolesToPreserve);
-        personFromForm.setRoles(roleRepo.findAllByPersonsIs(personFromForm));
-
-//        personFromForm.addRole(personRepo.findByUsername(principal.getName()).getRole());
-        personRepo.save(personFromForm);
+        // the form only has the personal details, the Person that comes back from it has no skills or roles, and
+        // saving it as is would delete them.  so only the form's fields are copied onto the user's own Person, found by
+        // username rather than the form's id.  its skills and roles aren't loaded, and saving leaves them as they are
+        Person p = personRepo.findByUsername(principal.getName());
+        p.setNameFirst(personFromForm.getNameFirst());
+        p.setNameLast(personFromForm.getNameLast());
+        p.setEmail(personFromForm.getEmail());
+        personRepo.save(p);
+        resumeChanges.detailsChanged(p);
+        currentPerson.invalidate();
 
         // go to education section automatically, it's the most logical
         // since there is no confirmation page for addperson, we want to redirect here
@@ -459,22 +525,20 @@ public class MainController {
 
     @GetMapping("/addeducation")
     public String addEdGet(Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /addeducation GET");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
         // get the current Person
 //        Person p = personRepo.findOne(currPerson.getPersonId());
-        Person p = personRepo.findByUsername(principal.getName());
+        Person p = currentPerson.get(principal);
 
 
         // disable the submit button if >= 10 records in db, it would never be possible for the user to click to get
         // here from the navi page if there were already >= 10 records, however they could manually type in the URL
         // so I want to disable the submit button if they do that and there are already 10 records
-        model.addAttribute("disableSubmit", educationRepo.countAllByMyPersonIs(p) >= 10);
+        long count = resumeCounters.get(p).getNumEdAchievements();
+        model.addAttribute("disableSubmit", count >= 10);
 //        model.addAttribute("disableSubmit", educationRepo.count() >= 10);
 
         // each resume section (except personal) shows a running count of the number of records currently in the db
-        model.addAttribute("currentNumRecords", educationRepo.countAllByMyPersonIs(p)); // where is my cute little 'o:'?
+        model.addAttribute("currentNumRecords", count); // where is my cute little 'o:'?
 
         NavBarState pageState = getPageLinkState(p);
         pageState.setHighlightEdNav(true);
@@ -482,7 +546,6 @@ public class MainController {
 
         model.addAttribute("firstAndLastName", p.getFullName());
 
-        System.out.println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%% created new ea, attached currPerson to it, about to add it to model");
         // create a new ea, attach the curr person to it, and add it to model
         EducationAchievement ea = new EducationAchievement();
         ea.setMyPerson(p);
@@ -495,16 +558,12 @@ public class MainController {
     @PostMapping("/addeducation")
     public String addEdPost(@Valid @ModelAttribute("newEdAchievement") EducationAchievement educationAchievement,
                             BindingResult bindingResult, Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /addeducation POST");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
         // get the current Person
 //        Person p = personRepo.findOne(currPerson.getPersonId());
-        Person p = personRepo.findByUsername(principal.getName());
+        Person p = currentPerson.get(principal);
 
-        // get the current count from educationRepo for the current Person
-        long count = educationRepo.countAllByMyPersonIs(p);
-        System.out.println("=========================================== repo count for currPerson is: " + count);
+        // get the current count for the current Person
+        long count = resumeCounters.get(p).getNumEdAchievements();
 
         // the persons name is show at the top of each 'add' section AND each confirmation page, so we want to add
         // it to the model no matter which view is returned
@@ -528,12 +587,14 @@ public class MainController {
         // I'm being picky here, but it is possible for the user to refresh the page, which bypasses the form submit
         // button, and so they would be able to add more than 10 items, to avoid this, just condition the db save on count
         if(count < 10) {
-            System.out.println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%% about to save ea to educationRepo");
+            // an ed that already has an id is being edited, not added, so the count does not change
+            boolean isNew = educationAchievement.getId() == 0;
             educationRepo.save(educationAchievement);
+            resumeChanges.educationSaved(p, educationAchievement, isNew);
+            currentPerson.invalidate();
 
             // need to get an updated edsCount after saving to repo
-            count = educationRepo.countAllByMyPersonIs(p);
-            System.out.println("=========================================== repo count for currPerson is: " + count);
+            count = resumeCounters.get(p).getNumEdAchievements();
         }
 
         // need to get the count AFTER successfully adding to db, so it is up to date
@@ -560,21 +621,18 @@ public class MainController {
     // logic in this route is identical to /addeducation, see /addeducation GetMapping for explanatory comments
     @GetMapping("/addworkexperience")
     public String addWorkGet(Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /addworkexperience GET");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
         // get the current Person
 //        Person p = personRepo.findOne(currPerson.getPersonId());
-        Person p = personRepo.findByUsername(principal.getName());
-        model.addAttribute("disableSubmit", workExperienceRepo.countAllByMyPersonIs(p) >= 10);
-        model.addAttribute("currentNumRecords", workExperienceRepo.countAllByMyPersonIs(p));
+        Person p = currentPerson.get(principal);
+        long count = resumeCounters.get(p).getNumWorkExps();
+        model.addAttribute("disableSubmit", count >= 10);
+        model.addAttribute("currentNumRecords", count);
 
         NavBarState pageState = getPageLinkState(p);
         pageState.setHighlightWorkNav(true);
         model.addAttribute("pageState", pageState);
         model.addAttribute("firstAndLastName", p.getFullName());
 
-        System.out.println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%% created new workExp, attached currPerson to it, about to add it to model");
         WorkExperience workExp = new WorkExperience();
         workExp.setMyPerson(p);
         model.addAttribute("newWorkExperience", workExp);
@@ -587,15 +645,11 @@ public class MainController {
     @PostMapping("/addworkexperience")
     public String addWorkPost(@Valid @ModelAttribute("newWorkExperience") WorkExperience workExperience,
                             BindingResult bindingResult, Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /addworkexperience POST");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
         // get the current Person
-        Person p = personRepo.findByUsername(principal.getName());
+        Person p = currentPerson.get(principal);
 
-        // get the current count from work repo for the current Person
-        long count = workExperienceRepo.countAllByMyPersonIs(p);
-        System.out.println("=========================================== repo count for currPerson is: " + count);
+        // get the current count for the current Person
+        long count = resumeCounters.get(p).getNumWorkExps();
 
         model.addAttribute("firstAndLastName", p.getFullName());
 
@@ -611,11 +665,12 @@ public class MainController {
         }
 
         if(count < 10) {
-            System.out.println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%% about to save workExp to workExpRepo");
+            boolean isNew = workExperience.getId() == 0;
             workExperienceRepo.save(workExperience);
+            resumeChanges.workExperienceSaved(p, isNew);
+            currentPerson.invalidate();
 
-            count = workExperienceRepo.countAllByMyPersonIs(p);
-            System.out.println("=========================================== repo count for currPerson is: " + count);
+            count = resumeCounters.get(p).getNumWorkExps();
         }
 
         model.addAttribute("currentNumRecords", count);
@@ -637,14 +692,12 @@ public class MainController {
     // logic in this route is identical to /addeducation, see /addeducation GetMapping for explanatory comments
     @GetMapping("/addskill")
     public String addSkillGet(Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /addskill GET");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
         // get the current Person
-        Person p = personRepo.findByUsername(principal.getName());
+        Person p = currentPerson.get(principal);
 
-        model.addAttribute("disableSubmit", p.getSkills().size() >= 20);
-        model.addAttribute("currentNumRecords", p.getSkills().size());
+        long count = resumeCounters.get(p).getNumSkills();
+        model.addAttribute("disableSubmit", count >= 20);
+        model.addAttribute("currentNumRecords", count);
 
         NavBarState pageState = getPageLinkState(p);
         pageState.setHighlightSkillNav(true);
@@ -653,13 +706,8 @@ public class MainController {
         model.addAttribute("firstAndLastName", p.getFullName());
 
 
-        // make a Set of skill names, no duplicates in a set, user can pick from these, and also pick a rating
-        Set<String> skillNames = new LinkedHashSet<>();
-        for (Skill skill : skillRepo.findAllByOrderBySkillAsc()) {
-            skillNames.add(skill.getSkill());
-        }
-
-        model.addAttribute("skillNames", skillNames);
+        // list of distinct skill names, user can pick from these, and also pick a rating
+        model.addAttribute("skillNames", skillCatalog.get().getNames());
 
         return "addskill";
     }
@@ -670,35 +718,28 @@ public class MainController {
     public String addSkillPost(@RequestParam(value = "selectedSkillName", required = false) String selectedSkillName,
                                @RequestParam(value = "rating", required = false) String rating,
                                 Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /addskill POST");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! got newSkill with name: " + selectedSkillName);
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! got newSkill with rating: " + rating);
-
+        log.debug("adding skill {} rated {}", selectedSkillName, rating);
 
-        // get the current Person
-        Person p = personRepo.findByUsername(principal.getName());
+        // get the current Person, with skills, they're needed to check for a duplicate skill
+        Person p = currentPerson.getResume(principal);
 
-        // get the current count from work repo for the current Person
-        long count = p.getSkills().size();
-        System.out.println("=========================================== repo count for currPerson is: " + count);
+        // get the current count for the current Person
+        long count = resumeCounters.get(p).getNumSkills();
 
         model.addAttribute("firstAndLastName", p.getFullName());
 
-        Skill skillToAddToPerson = skillRepo.findBySkillIsAndRatingIs(selectedSkillName, rating);
-
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! skillRepo.findByBlahBlah id: " + skillToAddToPerson.getId());
+        Skill skillToAddToPerson = skillCatalog.get().find(selectedSkillName, rating);
 
 
         if(count < 20) {
-            System.out.println("%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%% about to save skill to Repo");
-
-            p.addSkill(skillToAddToPerson);
-            personRepo.save(p);
+            // adding the same skill twice is a no op
+            if(p.addSkill(skillToAddToPerson)) {
+                personRepo.save(p);
+                resumeChanges.skillAdded(p, skillToAddToPerson);
+                currentPerson.invalidate();
+            }
 
-            count = p.getSkills().size();
-            System.out.println("=========================================== repo count for currPerson is: " + count);
+            count = resumeCounters.get(p).getNumSkills();
         }
 
         NavBarState pageState = getPageLinkState(p);
@@ -718,16 +759,16 @@ public class MainController {
     // every record (except the single personal details record) can also be deleted by clicking a link next to it
     @GetMapping("/editdetails")
     public String editDetails(Model model, Principal principal) {
-        System.out.println("=============================================================== just entered /editdetails GET");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-
-        // get the current Person
-        Person p = personRepo.findByUsername(principal.getName());
+        // the whole resume, loaded before rendering starts
+        long countsVersion = resumeCounters.version(principal.getName());
+        Resume resume = userService.findResume(principal.getName());
+        Person p = resume.getPerson();
         model.addAttribute("person", p);
-        model.addAttribute("edAchievements", educationRepo.findAllByMyPersonIs(p));
-        model.addAttribute("workExperiences", workExperienceRepo.findAllByMyPersonIs(p));
-        model.addAttribute("skills", p.getSkills());
+        model.addAttribute("edAchievements", resume.getEducationAchievements());
+        model.addAttribute("workExperiences", resume.getWorkExperiences());
+        model.addAttribute("skills", resume.getSkills());
 
+        resumeCounters.resumeLoaded(resume, countsVersion);
         NavBarState pageState = getPageLinkState(p);
         pageState.setHighlightEditNav(true);
         model.addAttribute("pageState", pageState);
@@ -743,18 +784,18 @@ public class MainController {
     @GetMapping("/delete/{id}")
     public String delete(@PathVariable("id") long id, @RequestParam("type") String type, Principal principal)
     {
-        System.out.println("=============================================================== just entered /delete/{id} GET");
-//        System.out.println("=========================================== currPerson.getPersonId(): " + currPerson.getPersonId());
-        System.out.println("=========================================== incoming path var Id: " + id);
+        log.debug("deleting {} {}", type, id);
 
-        Person p = personRepo.findByUsername(principal.getName());
+        Person p = currentPerson.get(principal);
 
         try {
             switch (type) {
                 case "ed" :
-                    // remove the ed from person, then delete it from it's repo
-                    p.removeEdAchievement(educationRepo.findOne(id));
-                    educationRepo.delete(id);
+                    // one delete statement, only deletes it if it's theirs, nothing happens if it's already gone
+                    if(userService.deleteEducation(p, id)) {
+                        resumeChanges.educationDeleted(p, id);
+                        currentPerson.invalidate();
+                    }
                     // return with an anchor tag so that the user is still at the same section after deleting
                     // this is not perfect, but it's better than jumping to the top of the page each time
                     return "redirect:/editdetails#education";
@@ -775,30 +816,26 @@ public class MainController {
 //                    personRepo.delete(id); // is this all?
                     return "redirect:/";
                 case "workexp" :
-                    p.removeWorkExperience(workExperienceRepo.findOne(id));
-                    workExperienceRepo.delete(id);
+                    if(userService.deleteWorkExperience(p, id)) {
+                        resumeChanges.workExperienceDeleted(p);
+                        currentPerson.invalidate();
+                    }
                     return "redirect:/editdetails#workexperiences";
                 case "skill" :
-                    p.removeSkill(skillRepo.findOne(id));
+                    // the Person's skills have to be loaded to remove one
+                    p = currentPerson.getResume(principal);
+                    Skill skillToRemove = skillCatalog.get().findById(id);
+                    if(skillToRemove == null || !p.removeSkill(skillToRemove)) {
+                        return "redirect:/editdetails#skills";
+                    }
                     personRepo.save(p);
+                    resumeChanges.skillRemoved(p, skillToRemove);
+                    currentPerson.invalidate();
                     return "redirect:/editdetails#skills";
                 case "job" :
-                    // get the job in question
-                    Job job = jobRepo.findOne(id);
-
-                    // remove the skills from the job... necessary? don't think so....
-//                    job.getSkills().clear();
-
-                    // remove the job from it's person
-                    p.removeJob(job);
-
-                    // remove this job from all Skills that associate with it
-                    for (Skill skill : skillRepo.findAll()) {
-                        skill.removeJob(job);
-                    }
-
-                    // delete it
-                    jobRepo.delete(id);
+                    // unlinks the job from its skills and deletes it, without loading any skills or jobs
+                    jobService.deletePostings(p, Collections.singletonList(id));
+                    currentPerson.invalidate();
 
                     return "redirect:/summary";
             }
@@ -807,6 +844,7 @@ public class MainController {
             // refreshing the page will attempt to delete the same ID from the db, which will not exist anymore if
             // they just deleted it.  catching the exception will prevent the app from crashing, and the same page
             // will simply be redisplayed
+            log.debug("could not delete {} {}", type, id, e);
         }
 
         // should never happen, but need it to compile, better to redirect, just in case something does go wrong, at
@@ -820,11 +858,8 @@ public class MainController {
     @GetMapping("/update/{id}")
     public String update(@PathVariable("id") long id, @RequestParam("type") String type, Model model, Principal principal)
     {
-        System.out.println("=============================================================== just entered /update/{id} GET");
-//        System.out.println("=========================================== currPerson.getPersonId() initially: " + currPerson.getPersonId());
-
         // set the current person ID to the incoming path variable IF type is person or student
-        Person p = personRepo.findByUsername(principal.getName());
+        Person p = currentPerson.get(principal);
 
         // no matter what view is returned, we ALWAYS will allow the submit button to work, since the form that is
         // displays can only contain a record that already exists in a repo
@@ -844,38 +879,45 @@ public class MainController {
                 // return the appropriate view
                 return "addperson";
             case "ed" :
-                model.addAttribute("newEdAchievement", educationRepo.findOne(id));
-                model.addAttribute("currentNumRecords", educationRepo.countAllByMyPersonIs(p));
+                EducationAchievement ea = userService.findEducation(p, id);
+                if(ea == null) {
+                    return "redirect:/editdetails";
+                }
+                model.addAttribute("newEdAchievement", ea);
+                model.addAttribute("currentNumRecords", resumeCounters.get(p).getNumEdAchievements());
                 pageState.setHighlightEdNav(true);
                 model.addAttribute("pageState", pageState);
                 return "addeducation";
             case "workexp" :
-                model.addAttribute("newWorkExperience", workExperienceRepo.findOne(id));
-                model.addAttribute("currentNumRecords", workExperienceRepo.countAllByMyPersonIs(p));
+                WorkExperience we = userService.findWorkExperience(p, id);
+                if(we == null) {
+                    return "redirect:/editdetails";
+                }
+                model.addAttribute("newWorkExperience", we);
+                model.addAttribute("currentNumRecords", resumeCounters.get(p).getNumWorkExps());
                 pageState.setHighlightWorkNav(true);
                 model.addAttribute("pageState", pageState);
                 return "addworkexperience";
             case "skill" :
-                model.addAttribute("newSkill", skillRepo.findOne(id));
-                model.addAttribute("currentNumRecords", p.getSkills().size());
+                model.addAttribute("newSkill", skillCatalog.get().findById(id));
+                model.addAttribute("currentNumRecords", resumeCounters.get(p).getNumSkills());
                 pageState.setHighlightSkillNav(true);
                 model.addAttribute("pageState", pageState);
                 return "addskill";
             case "job" :
-                model.addAttribute("newJob", jobRepo.findOne(id));
-                model.addAttribute("skills", skillRepo.findAll());
+                Job job = jobService.findPosting(p, id);
+                if(job == null) {
+                    return "redirect:/summary";
+                }
+                model.addAttribute("newJob", job);
+                model.addAttribute("skills", skillCatalog.get().findAll());
                 model.addAttribute("highLightPostJob", true);
                 model.addAttribute("highLightPostList", false);
                 model.addAttribute("highLightSearch", false);
                 model.addAttribute("showDelete", true);
 
-                // make a Set of skill names, no duplicates in a set, user can pick from these, and also pick a rating
-                Set<String> skillNames = new LinkedHashSet<>();
-                skillNames.add("None Selected");
-                for (Skill skill : skillRepo.findAllByOrderBySkillAsc()) {
-                    skillNames.add(skill.getSkill());
-                }
-                model.addAttribute("skillNames", skillNames);
+                // list of distinct skill names, user can pick from these, and also pick a rating
+                model.addAttribute("skillNames", jobSkillNames());
 
                 return "addjob";
         }
@@ -886,48 +928,90 @@ public class MainController {
     }
 
 
+    // the rendered page is cached until the resume changes, see ResumeCache
+    // if the browser already has the current version (If-None-Match matches the ETag), it just gets a 304, without
+    // loading anything from the db or rendering anything
     @GetMapping("/finalresume")
-    public String finalResumeGet(Model model, Principal principal) {
-        Person p = personRepo.findByUsername(principal.getName());
+    public ResponseEntity<String> finalResumeGet(Principal principal, WebRequest webRequest,
+                                                 HttpServletRequest request, HttpServletResponse response) {
+        String etag = resumeCache.etag(principal.getName());
+        if(webRequest.checkNotModified(etag)) {
+            // checkNotModified already set the 304 status and ETag
+            return null;
+        }
+
+        String html = resumeCache.get(principal.getName(), () -> {
+            long countsVersion = resumeCounters.version(principal.getName());
+            // the page is cached until the resume next changes, so it must not come from a replica that's behind
+            Resume resume = ReplicaRouter.onPrimary(() -> userService.findResume(principal.getName()));
+
+            resumeCounters.resumeLoaded(resume, countsVersion);
+            NavBarState pageState = getPageLinkState(resume.getPerson());
+            pageState.setHighlightFinalNav(true);
+
+            Map<String, Object> model = new HashMap<>();
+            model.put("pageState", pageState);
+            model.put("person", resume.getPerson());
+            model.put("resume", resume);
+            return model;
+        }, request, response);
+
+        // private: it's this user's resume, no-cache: the browser must always check the ETag with us before using it
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .body(html);
+    }
 
-        NavBarState pageState = getPageLinkState(p);
-        pageState.setHighlightFinalNav(true);
-        model.addAttribute("pageState", pageState);
 
-        model.addAttribute("person", p);
 
-        return "finalresume";
-    }
 
 
+    // skill names for the job form drop downs, recruiters can choose not to pick a skill
+    private List<String> jobSkillNames() {
+        List<String> skillNames = new ArrayList<>();
+        skillNames.add("None Selected");
+        skillNames.addAll(skillCatalog.get().getNames());
+        return skillNames;
+    }
 
 
+    // the model the matches table in addjobconfirmation.html needs, matching is true if the matches aren't ready yet
+    private void addJobMatches(Model model, Job job, boolean matching) {
+        model.addAttribute("jobId", job.getId());
+        model.addAttribute("matching", matching);
+        model.addAttribute("peopleWithMatchedSkills",
+                matching ? Collections.emptyList() : jobMatchService.findMatches(job.getId()));
+    }
+
 
         /**
          * The navbar links are disabled depending on the number of records in the various db tables.  For example, we
          * do not want to allow the user to click the EditDetails link if there are no records in any db table.
          * Note: the 'highlighted' nav bar link is set individually in each route.  Also, the navbar links contain badges
-         * that show the current counts for various db tables.  These counts are updated here and will always reflect the
-         * current state of the db tables.
+         * that show the current counts for various db tables.  These counts come from ResumeCounters, which is kept
+         * up to date by every route that adds or deletes records, so no db queries are needed here.
          * @return an updated NavBarState, but the highlighted navbar link must still be set individually
          */
     private NavBarState getPageLinkState(Person p) {
+        ResumeCounts counts = resumeCounters.get(p);
         NavBarState state = new NavBarState();
 
         // add the current table counts, so the navbar badges know what to display
-        state.setNumSkills(p.getSkills().size());
-        state.setNumWorkExps(workExperienceRepo.countAllByMyPersonIs(p));
-        state.setNumEdAchievements(educationRepo.countAllByMyPersonIs(p));
+        state.setNumSkills(counts.getNumSkills());
+        state.setNumWorkExps(counts.getNumWorkExps());
+        state.setNumEdAchievements(counts.getNumEdAchievements());
 
         // disable links as necessary... don't allow them to click any links if the repos contain too many records
-        state.setDisableAddEdLink(educationRepo.countAllByMyPersonIs(p) >= 10);
-        state.setDisableAddSkillLink(p.getSkills().size() >= 20);
-        state.setDisableAddWorkExpLink(workExperienceRepo.countAllByMyPersonIs(p) >= 10);
+        state.setDisableAddEdLink(counts.getNumEdAchievements() >= 10);
+        state.setDisableAddSkillLink(counts.getNumSkills() >= 20);
+        state.setDisableAddWorkExpLink(counts.getNumWorkExps() >= 10);
 
 //        state.setDisableEditDetailsLink(false);
 
         // disable show final resume link until at least one ed achievement, skill, and personal info has been entered
-        state.setDisableShowFinalLink(p.getSkills().size() == 0 || educationRepo.countAllByMyPersonIs(p) == 0);
+        state.setDisableShowFinalLink(counts.getNumSkills() == 0 || counts.getNumEdAchievements() == 0);
 
         return state;
     }
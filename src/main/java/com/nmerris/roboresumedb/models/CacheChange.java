@@ -0,0 +1,73 @@
+package com.nmerris.roboresumedb.models;
+
+import javax.persistence.*;
+import java.util.Date;
+
+// one change an app instance (node) made, saved by CacheSync so the other nodes can update their in memory caches
+// a PERSON change is a Person's details or resume, a JOB change a job that was saved or deleted
+@Entity
+public class CacheChange {
+
+    public static final String PERSON = "PERSON";
+    public static final String JOB = "JOB";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cache_change_seq")
+    @SequenceGenerator(name = "cache_change_seq", sequenceName = "cache_change_seq", allocationSize = 50)
+    private long id;
+
+    // the node that made the change
+    @Column(nullable = false, length = 36)
+    private String node;
+
+    @Column(nullable = false, length = 20)
+    private String kind;
+
+    // the Person or Job id
+    private long targetId;
+
+    // the Person's username, null for jobs
+    private String username;
+
+    // filled in by the db, never by a node, so it's the same clock for every node
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false, insertable = false, updatable = false,
+            columnDefinition = "timestamp default current_timestamp")
+    private Date madeAt;
+
+
+    public CacheChange() {
+    }
+
+    public CacheChange(String node, String kind, long targetId, String username) {
+        this.node = node;
+        this.kind = kind;
+        this.targetId = targetId;
+        this.username = username;
+    }
+
+
+    public long getId() {
+        return id;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public long getTargetId() {
+        return targetId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Date getMadeAt() {
+        return madeAt;
+    }
+}
@@ -6,11 +6,14 @@ import javax.persistence.*;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Size;
 
+// EducationAchievement.person: school search results show whose education it is
+@NamedEntityGraph(name = "EducationAchievement.person", attributeNodes = @NamedAttributeNode("myPerson"))
 @Entity
 public class EducationAchievement {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "education_achievement_seq")
+    @SequenceGenerator(name = "education_achievement_seq", sequenceName = "education_achievement_seq", allocationSize = 50)
     private long id;
 
     @NotEmpty
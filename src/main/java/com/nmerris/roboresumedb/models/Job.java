@@ -1,5 +1,6 @@
 package com.nmerris.roboresumedb.models;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.persistence.*;
@@ -7,14 +8,18 @@ import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Size;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
+// Job.skills: for pages that show each job's skills
+@NamedEntityGraph(name = "Job.skills", attributeNodes = @NamedAttributeNode("skills"))
 @Entity
 public class Job implements Comparable<Job> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_seq")
+    @SequenceGenerator(name = "job_seq", sequenceName = "job_seq", allocationSize = 50)
     private long id;
 
     @NotEmpty
@@ -37,15 +42,21 @@ public class Job implements Comparable<Job> {
     private String description;
 
     // Skill is owner of Job
-    @ManyToMany(fetch = FetchType.EAGER)
+    // LAZY, pages that list jobs with their skills load the skills for a whole page of jobs in one query (BatchSize)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @BatchSize(size = 50)
     @JoinTable(joinColumns = @JoinColumn(name = "job_id"), inverseJoinColumns = @JoinColumn(name = "skill_id"))
-    private Collection<Skill> skills;
+    private Set<Skill> skills;
 
     // Person is the owner of Job
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "person_id")
     private Person myPerson;
 
+    // when seekers were last matched to this job, null until the first background match is done (see JobMatchService)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date matchedAt;
+
 
     @Override
     public int compareTo(Job other) {
@@ -62,7 +73,14 @@ public class Job implements Comparable<Job> {
         skills = new HashSet<>();
     }
 
+    // a recruiter can pick the same skill more than once in the form, skills are compared by id because the same
+    // skill may be a different object (see SkillCatalog)
     public void addSkill(Skill skill) {
+        for (Skill s : skills) {
+            if(s.getId() == skill.getId()) {
+                return;
+            }
+        }
         skills.add(skill);
     }
 
@@ -119,7 +137,7 @@ public class Job implements Comparable<Job> {
     }
 
     public void setSkills(Collection<Skill> skills) {
-        this.skills = skills;
+        this.skills = new HashSet<>(skills);
     }
 
     public Person getMyPerson() {
@@ -129,4 +147,12 @@ public class Job implements Comparable<Job> {
     public void setMyPerson(Person myPerson) {
         this.myPerson = myPerson;
     }
+
+    public Date getMatchedAt() {
+        return matchedAt;
+    }
+
+    public void setMatchedAt(Date matchedAt) {
+        this.matchedAt = matchedAt;
+    }
 }
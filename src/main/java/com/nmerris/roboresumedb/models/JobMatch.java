@@ -0,0 +1,84 @@
+package com.nmerris.roboresumedb.models;
+
+import javax.persistence.*;
+
+// one job seeker who matches a job, saved by JobMatchService so the matches don't have to be worked out again
+// there is a row for every seeker who has at least one of the job's skills at the posted rating or better
+// indexed both ways (see db/migration/V3), a job's matches are replaced when the job is saved, a seeker's when their
+// skills change.  at most one row per job and seeker (see db/migration/V5)
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_job_match_job_person", columnNames = {"job_id", "person_id"}))
+public class JobMatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_match_seq")
+    @SequenceGenerator(name = "job_match_seq", sequenceName = "job_match_seq", allocationSize = 50)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "job_id")
+    private Job job;
+
+    // the matching job seeker
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "person_id")
+    private Person person;
+
+    // number of the job's skills the seeker has at the posted rating or better
+    private int ratingMatches;
+
+    // number of the job's skills the seeker has at any rating
+    private int nameMatches;
+
+
+    public JobMatch() {
+    }
+
+    public JobMatch(Job job, Person person, int ratingMatches, int nameMatches) {
+        this.job = job;
+        this.person = person;
+        this.ratingMatches = ratingMatches;
+        this.nameMatches = nameMatches;
+    }
+
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public void setJob(Job job) {
+        this.job = job;
+    }
+
+    public Person getPerson() {
+        return person;
+    }
+
+    public void setPerson(Person person) {
+        this.person = person;
+    }
+
+    public int getRatingMatches() {
+        return ratingMatches;
+    }
+
+    public void setRatingMatches(int ratingMatches) {
+        this.ratingMatches = ratingMatches;
+    }
+
+    public int getNameMatches() {
+        return nameMatches;
+    }
+
+    public void setNameMatches(int nameMatches) {
+        this.nameMatches = nameMatches;
+    }
+}
@@ -10,11 +10,22 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+// fetch plans, each repository query asks for just what its page needs, everything else is LAZY
+// Person.roles: every logged in request needs the role to pick a navbar/view
+// Person.resume: final resume and edit details pages show the skills too
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = "Person.roles", attributeNodes = @NamedAttributeNode("roles")),
+        @NamedEntityGraph(name = "Person.resume", attributeNodes = {
+                @NamedAttributeNode("roles"), @NamedAttributeNode("skills")})
+})
 @Entity
 public class Person implements Comparable<Person> {
     
+    // one pooled sequence per table, hibernate reserves 50 ids (allocationSize) per trip to the db, so inserts don't
+    // each need a sequence call and can be sent in jdbc batches, the sequences are created by db/migration/V2
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "person_seq")
+    @SequenceGenerator(name = "person_seq", sequenceName = "person_seq", allocationSize = 50)
     private long id;
     
     @NotEmpty
@@ -56,15 +67,17 @@ public class Person implements Comparable<Person> {
 
 
     // Role is owner of Person
-    // for the love of everything holy, MUST MUST MUST use EAGER here, or you can't log in at all!!
-    @ManyToMany(fetch = FetchType.EAGER)
+    // LAZY, but personRepo.findByUsername always fetches roles with the Person.roles entity graph, which is what
+    // login and every getRole() check need
+    // Sets, not Collections: Hibernate can't fetch more than one List/Collection 'bag' in the same query
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(joinColumns = @JoinColumn(name = "person_id"), inverseJoinColumns = @JoinColumn(name = "role_id"))
-    private Collection<Role> roles;
+    private Set<Role> roles;
 
     // Skill is owner of Person
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(joinColumns = @JoinColumn(name = "person_id"), inverseJoinColumns = @JoinColumn(name = "skill_id"))
-    private Collection<Skill> skills;
+    private Set<Skill> skills;
 
 
 
@@ -114,8 +127,22 @@ public class Person implements Comparable<Person> {
         return nameFirst + " " + nameLast;
     }
 
-    public void addSkill(Skill skill) {
-        skills.add(skill);
+    // returns false if this Person already has this skill, skills are compared by id because the same skill may be
+    // a different object (see SkillCatalog)
+    public boolean addSkill(Skill skill) {
+        if(hasSkill(skill.getId())) {
+            return false;
+        }
+        return skills.add(skill);
+    }
+
+    public boolean hasSkill(long skillId) {
+        for (Skill s : skills) {
+            if(s.getId() == skillId) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // normal getters/setters =================================================================================
@@ -137,8 +164,9 @@ public class Person implements Comparable<Person> {
         workExperiences.clear();
     }
 
-    public void removeSkill(Skill skill) {
-        skills.remove(skill);
+    // returns false if this Person didn't have this skill, compared by id, same as addSkill
+    public boolean removeSkill(Skill skill) {
+        return skills.removeIf(s -> s.getId() == skill.getId());
     }
 
     public void removeAllSkills() {
@@ -1,22 +1,31 @@
 package com.nmerris.roboresumedb.models;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Set;
 
+// in the second level cache (see ehcache.xml), the two roles never change, every registration looks one up
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Role {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "role_seq")
+    @SequenceGenerator(name = "role_seq", sequenceName = "role_seq", allocationSize = 50)
     private long id;
 
     @Column(unique = true)
     private String role;
 
     // a role always 'owns' its Person or Recruiter, it's just more logical this way if you ask me
-    @ManyToMany(mappedBy = "roles", fetch = FetchType.EAGER)
-    private Collection<Person> persons;
+    // LAZY: there are only two roles, so EAGER here meant loading a role loaded every user in the system
+    @ManyToMany(mappedBy = "roles", fetch = FetchType.LAZY)
+    private Set<Person> persons;
 
 //    @ManyToMany(mappedBy = "roles", fetch = FetchType.LAZY)
 //    private Collection<Recruiter> recruiters;
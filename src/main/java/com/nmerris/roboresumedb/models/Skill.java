@@ -1,5 +1,7 @@
 package com.nmerris.roboresumedb.models;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.ManyToAny;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.springframework.jmx.export.annotation.ManagedMetric;
@@ -10,11 +12,16 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+// in the second level cache (see ehcache.xml), the skill catalog hardly ever changes but every skill and job page
+// reads it
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Skill implements Comparable<Skill> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "skill_seq")
+    @SequenceGenerator(name = "skill_seq", sequenceName = "skill_seq", allocationSize = 50)
     private long id;
 
     @NotEmpty
@@ -31,11 +38,12 @@ public class Skill implements Comparable<Skill> {
 //    private Person myPerson;
 
     // Skill owns Job
-    @ManyToMany(mappedBy = "skills", fetch = FetchType.EAGER)
-    private Collection<Job> jobs;
+    // LAZY: loading one skill must not drag in every job that uses it (and all their skills)
+    @ManyToMany(mappedBy = "skills", fetch = FetchType.LAZY)
+    private Set<Job> jobs;
 
     @ManyToMany(mappedBy = "skills", fetch = FetchType.LAZY)
-    private Collection<Person> persons;
+    private Set<Person> persons;
 
 
 //
@@ -108,7 +116,7 @@ public class Skill implements Comparable<Skill> {
     }
 
     public void setJobs(Collection<Job> jobs) {
-        this.jobs = jobs;
+        this.jobs = new HashSet<>(jobs);
     }
 
     public Collection<Person> getPersons() {
@@ -116,6 +124,6 @@ public class Skill implements Comparable<Skill> {
     }
 
     public void setPersons(Collection<Person> persons) {
-        this.persons = persons;
+        this.persons = new HashSet<>(persons);
     }
 }
@@ -12,7 +12,8 @@ import java.util.Date;
 public class WorkExperience {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "work_experience_seq")
+    @SequenceGenerator(name = "work_experience_seq", sequenceName = "work_experience_seq", allocationSize = 50)
     private long id;
 
     @NotEmpty
@@ -0,0 +1,26 @@
+package com.nmerris.roboresumedb.repositories;
+
+import com.nmerris.roboresumedb.models.CacheChange;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.Date;
+import java.util.List;
+
+public interface CacheChangeRepo extends CrudRepository<CacheChange, Long> {
+
+    // every change made at or after since, oldest first
+    @Query("select c from CacheChange c where c.madeAt >= ?1 order by c.madeAt, c.id")
+    List<CacheChange> findAllMadeSince(Date since);
+
+    // the newest change's made_at, null if there are none
+    @Query("select max(c.madeAt) from CacheChange c")
+    Date findLatestMadeAt();
+
+    // returns the number of removed records
+    @Modifying
+    @Query("delete from CacheChange c where c.madeAt < ?1")
+    int deleteAllMadeBefore(Date before);
+
+}
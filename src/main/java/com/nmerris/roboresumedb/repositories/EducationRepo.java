@@ -2,21 +2,44 @@ package com.nmerris.roboresumedb.repositories;
 
 import com.nmerris.roboresumedb.models.EducationAchievement;
 import com.nmerris.roboresumedb.models.Person;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 public interface EducationRepo extends CrudRepository<EducationAchievement, Long> {
 
     // returns all the records associated with currentPerson
     Iterable<EducationAchievement> findAllByMyPersonIs(Person currentPerson);
 
+    // the record, only if it belongs to currentPerson, otherwise null
+    EducationAchievement findByIdAndMyPerson(long id, Person currentPerson);
+
     // returns the count of all the records associated with currentPerson
     long countAllByMyPersonIs(Person currentPerson);
 
     // returns the number of removed records
-    long removeAllByMyPersonIs(Person currentPerson);
-
-    LinkedHashSet<EducationAchievement> findBySchoolContainsOrderBySchoolAsc(String school);
+    // one delete statement, the records are never loaded
+    @Modifying
+    @Query("delete from EducationAchievement e where e.myPerson = ?1")
+    int deleteAllByPerson(Person currentPerson);
+
+    // returns 1 if the record was deleted, 0 if it doesn't exist or doesn't belong to currentPerson
+    @Modifying
+    @Query("delete from EducationAchievement e where e.id = ?1 and e.myPerson = ?2")
+    int deleteByIdAndPerson(long id, Person currentPerson);
+
+    // every {id, school, person id}, used to build SearchIndex
+    @Query("select e.id, e.school, e.myPerson.id from EducationAchievement e")
+    List<Object[]> findAllSchools();
+
+    // a page of school search results, each with its Person
+    @EntityGraph("EducationAchievement.person")
+    @Query("select e from EducationAchievement e where e.id in ?1")
+    List<EducationAchievement> findAllWithPersonByIdIn(Collection<Long> ids);
 
 }
\ No newline at end of file
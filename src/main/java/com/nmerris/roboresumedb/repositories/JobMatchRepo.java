@@ -0,0 +1,34 @@
+package com.nmerris.roboresumedb.repositories;
+
+import com.nmerris.roboresumedb.models.JobMatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface JobMatchRepo extends CrudRepository<JobMatch, Long> {
+
+    // a job's matches, best first, each with its seeker
+    // pass a PageRequest(0, n) to only get the n best
+    @Query("select m from JobMatch m join fetch m.person where m.job.id = ?1 " +
+            "order by m.ratingMatches desc, m.nameMatches desc, m.person.id")
+    List<JobMatch> findAllByJobId(long jobId, Pageable limit);
+
+    // {job id, number of matches} for each of the jobs that has any matches
+    @Query("select m.job.id, count(m) from JobMatch m where m.job.id in ?1 group by m.job.id")
+    List<Object[]> countAllByJobIds(Collection<Long> jobIds);
+
+    // returns the number of removed records
+    @Modifying
+    @Query("delete from JobMatch m where m.job.id in ?1")
+    int deleteAllByJobIds(Collection<Long> jobIds);
+
+    // returns the number of removed records
+    @Modifying
+    @Query("delete from JobMatch m where m.person.id = ?1")
+    int deleteAllBySeekerId(long seekerId);
+
+}
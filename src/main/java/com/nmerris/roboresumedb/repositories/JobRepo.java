@@ -2,20 +2,83 @@ package com.nmerris.roboresumedb.repositories;
 
 import com.nmerris.roboresumedb.models.Job;
 import com.nmerris.roboresumedb.models.Person;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.security.access.method.P;
 import sun.awt.image.ImageWatched;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 public interface JobRepo extends CrudRepository<Job, Long> {
 
     Collection<Job> findAllByMyPersonIs(Person person);
 
-    // linked hash set: no duplicates AND retains order
-    LinkedHashSet<Job> findByEmployerContainingOrderByEmployerAsc(String employer);
+    // one job with its skills, in one query
+    @EntityGraph("Job.skills")
+    @Query("select j from Job j where j.id = ?1")
+    Job findWithSkillsById(long id);
 
-    LinkedHashSet<Job> findByTitleContainingOrderByTitleAsc(String jobTitle);
+    // one of a recruiter's jobs with its skills, in one query, null if it doesn't exist or someone else posted it
+    @EntityGraph("Job.skills")
+    @Query("select j from Job j where j.id = ?1 and j.myPerson = ?2")
+    Job findPosting(long id, Person recruiter);
+
+    // a page of jobs with their skills, in one query
+    @EntityGraph("Job.skills")
+    @Query("select j from Job j where j.id in ?1")
+    List<Job> findAllWithSkillsByIdIn(Collection<Long> ids);
+
+    // only touches matchedAt, so it can't overwrite an edit the recruiter made while the job was being matched
+    @Modifying
+    @Query("update Job j set j.matchedAt = ?2 where j.id = ?1")
+    int setMatchedAt(long id, Date matchedAt);
+
+    // every {job id, skill name, rating} row, used to build SkillMatchIndex in one query
+    @Query("select j.id, s.skill, s.rating from Job j join j.skills s order by j.id")
+    List<Object[]> findAllJobSkills();
+
+    // keyset paging for a recruiter's job postings, sorted by employer (ignoring case) then id
+    // pass a PageRequest(0, n) to limit the number of rows, the offset is always zero
+    @Query("select j from Job j where j.myPerson = ?1 order by lower(j.employer), j.id")
+    List<Job> findPostings(Person person, Pageable limit);
+
+    // the rows sorted after (lower case employer, id)
+    @Query("select j from Job j where j.myPerson = ?1 and (lower(j.employer) > ?2 or (lower(j.employer) = ?2 and j.id > ?3)) " +
+            "order by lower(j.employer), j.id")
+    List<Job> findPostingsAfter(Person person, String employer, long id, Pageable limit);
+
+    // the rows sorted before (lower case employer, id), in REVERSE order, closest to the cursor first
+    @Query("select j from Job j where j.myPerson = ?1 and (lower(j.employer) < ?2 or (lower(j.employer) = ?2 and j.id < ?3)) " +
+            "order by lower(j.employer) desc, j.id desc")
+    List<Job> findPostingsBefore(Person person, String employer, long id, Pageable limit);
+
+    // set based job deletion, see JobService.deletePostings
+    // every statement is limited to jobs posted by this recruiter, so nobody can delete someone else's job
+
+    // the ids out of jobIds that belong to this recruiter
+    @Query("select j.id from Job j where j.id in ?1 and j.myPerson = ?2")
+    List<Long> findPostingIds(Collection<Long> jobIds, Person recruiter);
+
+    // unlink the jobs from all their skills, a single statement against the join table no matter how many skills
+    // there are.  there is no Job <-> Skill entity to delete from with JPQL, so this one is native
+    @Modifying
+    @Query(value = "delete from job_skills where job_id in " +
+            "(select id from job where id in ?1 and person_id = ?2)", nativeQuery = true)
+    int unlinkPostingSkills(Collection<Long> jobIds, long recruiterId);
+
+    // clearAutomatically: any of these jobs already loaded in this request are stale after this runs
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Job j where j.id in ?1 and j.myPerson = ?2")
+    int deletePostings(Collection<Long> jobIds, Person recruiter);
+
+    // every {id, title, employer, description}, used to build SearchIndex
+    @Query("select j.id, j.title, j.employer, j.description from Job j")
+    List<Object[]> findAllSearchFields();
 
 }
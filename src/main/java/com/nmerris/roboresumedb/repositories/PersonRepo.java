@@ -3,26 +3,52 @@ package com.nmerris.roboresumedb.repositories;
 import com.nmerris.roboresumedb.models.Person;
 import com.nmerris.roboresumedb.models.Role;
 import com.nmerris.roboresumedb.models.Skill;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 import java.util.*;
 
 public interface PersonRepo extends CrudRepository<Person, Long> {
 
+    // roles are always needed, for login and to pick the right view, so fetch them in the same query
+    @EntityGraph("Person.roles")
     Person findByUsername(String username);
 
+    // same as findByUsername, plus the skills, for pages that show a whole resume
+    @EntityGraph("Person.resume")
+    @Query("select p from Person p where p.username = ?1")
+    Person findResumeByUsername(String username);
+
+    // just what login needs, one {password, role name} row per role, no Person or Role entities are loaded
+    @Query("select p.password, r.role from Person p left join p.roles r where p.username = ?1")
+    List<Object[]> findLoginByUsername(String username);
+
     Person findByEmail(String email);
 
     Long countByEmail(String email);
 
     Long countByUsername(String username);
 
-    LinkedHashSet<Person> findByNameFirstIsAndNameLastIsOrderByNameLastAsc(String firstName, String lastName);
-
-    // if user enters only one name, assume it could be either a first or last name
-    LinkedHashSet<Person> findByNameFirstIsOrNameLastIsOrderByNameLastAsc(String name, String sameName);
-
-    // get a list of Persons who have any skill that exactly matches any of the skills
-    Collection<Person> findBySkillsIsAndRolesIs(Skill skill, Role role);
+    // every {id, first name, last name}, used to build SearchIndex
+    @Query("select p.id, p.nameFirst, p.nameLast from Person p")
+    List<Object[]> findAllNames();
+
+    // unlink a Person from all their skills, a single statement against the join table no matter how many skills
+    // they have.  there is no Person <-> Skill entity to delete from with JPQL, so this one is native
+    // clearAutomatically: the Person and their skills already loaded in this request are stale after this runs
+    @Modifying(clearAutomatically = true)
+    @Query(value = "delete from person_skills where person_id = ?1", nativeQuery = true)
+    int unlinkAllSkills(long personId);
+
+    // count the skills for one Person without loading the skills collection
+    @Query("select count(s) from Person p join p.skills s where p.id = ?1")
+    long countSkillsById(long personId);
+
+    // every {seeker id, skill name, rating} row for job seekers, used to build SkillMatchIndex in one query
+    @Query("select p.id, s.skill, s.rating from Person p join p.skills s join p.roles r where r.role = 'ROLE_USER' " +
+            "order by p.id")
+    List<Object[]> findAllSeekerSkills();
 
 }
\ No newline at end of file
@@ -2,13 +2,18 @@ package com.nmerris.roboresumedb.repositories;
 
 import com.nmerris.roboresumedb.models.Person;
 import com.nmerris.roboresumedb.models.Role;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
+import javax.persistence.QueryHint;
+
 import java.util.Collection;
 import java.util.Set;
 
 public interface RoleRepo extends CrudRepository<Role, Long> {
 
+    // in the query cache, so after the first time it's answered from memory with no db query at all
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Role findByRole(String role);
 
     Set<Role> findAllByPersonsIs(Person person);
@@ -2,6 +2,7 @@ package com.nmerris.roboresumedb.repositories;
 
 import com.nmerris.roboresumedb.models.Person;
 import com.nmerris.roboresumedb.models.Skill;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 import java.util.LinkedHashSet;
@@ -11,8 +12,8 @@ public interface SkillRepo extends CrudRepository<Skill, Long> {
 
     long countAllByIdIs(long id);
 
-    Skill findBySkillIsAndRatingIs(String name, String rating);
-
-    List<Skill> findAllByOrderBySkillAsc();
+    // every {id, name, rating}, without loading any Skill entities or their jobs, used to build SkillCatalog
+    @Query("select s.id, s.skill, s.rating from Skill s")
+    List<Object[]> findAllIdNameRating();
 
 }
\ No newline at end of file
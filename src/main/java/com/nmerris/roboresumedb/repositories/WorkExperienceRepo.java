@@ -2,6 +2,8 @@ package com.nmerris.roboresumedb.repositories;
 
 import com.nmerris.roboresumedb.models.Person;
 import com.nmerris.roboresumedb.models.WorkExperience;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 public interface WorkExperienceRepo extends CrudRepository<WorkExperience, Long> {
@@ -9,10 +11,21 @@ public interface WorkExperienceRepo extends CrudRepository<WorkExperience, Long>
     // returns all the records associated with currentPerson
     Iterable<WorkExperience> findAllByMyPersonIs(Person currentPerson);
 
+    // the record, only if it belongs to currentPerson, otherwise null
+    WorkExperience findByIdAndMyPerson(long id, Person currentPerson);
+
     // returns the count of all the records associated with currentPerson
     long countAllByMyPersonIs(Person currentPerson);
 
     // returns the number of removed records
-    long removeAllByMyPersonIs(Person currentPerson);
+    // one delete statement, the records are never loaded
+    @Modifying
+    @Query("delete from WorkExperience w where w.myPerson = ?1")
+    int deleteAllByPerson(Person currentPerson);
+
+    // returns 1 if the record was deleted, 0 if it doesn't exist or doesn't belong to currentPerson
+    @Modifying
+    @Query("delete from WorkExperience w where w.id = ?1 and w.myPerson = ?2")
+    int deleteByIdAndPerson(long id, Person currentPerson);
 
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.models.CacheChange;
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.CacheChangeRepo;
+import com.nmerris.roboresumedb.repositories.EducationRepo;
+import com.nmerris.roboresumedb.repositories.JobRepo;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Keeps the in memory caches of every app instance (node) in step, so any node can serve any request.  SearchIndex,
+ * SkillMatchIndex, ResumeCounters, JobRecommendations, ResumeCache and UserDetailsCache live in each node's memory,
+ * and a route only updates the ones on the node it ran on.  So once a change is committed ResumeChanges (or the route,
+ * for jobs) also calls personChanged or jobsChanged here, which saves a CacheChange row, and every node polls the
+ * cache_change table every jobpro.sync.poll-ms and reloads from the db whatever the OTHER nodes changed.  Until its next poll a node can still
+ * serve what it had before, ie a search hit or navbar count that's a second old.
+ * SkillCatalog needs none of this, the app never writes skills, every node reloads them on its own schedule.
+ */
+@Service
+public class CacheSync {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheSync.class);
+
+    @Autowired
+    CacheChangeRepo cacheChangeRepo;
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    JobRepo jobRepo;
+
+    @Autowired
+    EducationRepo educationRepo;
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    SkillMatchIndex skillMatchIndex;
+
+    @Autowired
+    ResumeCounters resumeCounters;
+
+    @Autowired
+    ResumeCache resumeCache;
+
+    @Autowired
+    UserDetailsCache userDetailsCache;
+
+    @Autowired
+    JobRecommendations jobRecommendations;
+
+    @Autowired
+    JobMatchService jobMatchService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // every poll looks this far back from the newest change it has seen, so a change whose transaction committed a
+    // little after a newer one was already polled is still picked up
+    @Value("${jobpro.sync.overlap-ms:10000}")
+    private long overlapMs;
+
+    // how long changes are kept, a node that can't poll for longer than this may have missed some
+    @Value("${jobpro.sync.keep-ms:3600000}")
+    private long keepMs;
+
+    // this node, a new one every start
+    private final String node = UUID.randomUUID().toString();
+
+    // everything below is only used holding this object's lock, ie in poll
+
+    // made_at of the newest change seen, in ms, -1 until the first poll
+    private long newestMs = -1;
+
+    // the changes already seen that are still inside the overlap, id -> made_at in ms
+    private final Map<Long, Long> seenMadeAt = new HashMap<>();
+
+    private long lastPolledAt;
+
+
+    // call once a change to a Person's details or resume is committed
+    public void personChanged(long personId, String username) {
+        publish(Collections.singletonList(new CacheChange(node, CacheChange.PERSON, personId, username)));
+    }
+
+    // call once jobs were saved or deleted, and that's committed
+    public void jobsChanged(Collection<Long> jobIds) {
+        List<CacheChange> changes = new ArrayList<>();
+        for (Long id : jobIds) {
+            changes.add(new CacheChange(node, CacheChange.JOB, id, null));
+        }
+        publish(changes);
+    }
+
+    public void jobChanged(long jobId) {
+        jobsChanged(Collections.singletonList(jobId));
+    }
+
+
+    // picks up the other nodes' changes
+    @Scheduled(fixedDelayString = "${jobpro.sync.poll-ms:1000}")
+    public synchronized void poll() {
+        try {
+            if(newestMs < 0) {
+                // everything from before this node started is already in the db the caches load from
+                Date latest = cacheChangeRepo.findLatestMadeAt();
+                newestMs = latest == null ? 0 : latest.getTime();
+            }
+            else if(System.currentTimeMillis() - lastPolledAt > keepMs) {
+                log.warn("no poll for {}ms, changes other nodes made meanwhile may be missing from this node's caches",
+                        System.currentTimeMillis() - lastPolledAt);
+            }
+            for (CacheChange change : cacheChangeRepo.findAllMadeSince(new Date(newestMs - overlapMs))) {
+                long madeAt = change.getMadeAt().getTime();
+                if(seenMadeAt.put(change.getId(), madeAt) != null) {
+                    continue;
+                }
+                newestMs = Math.max(newestMs, madeAt);
+                if(!node.equals(change.getNode())) {
+                    apply(change);
+                }
+            }
+            seenMadeAt.values().removeIf(madeAt -> madeAt < newestMs - overlapMs);
+            lastPolledAt = System.currentTimeMillis();
+        } catch (RuntimeException e) {
+            // nothing was lost, the next poll looks at the same changes again
+            log.warn("could not poll for cache changes", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobpro.sync.cleanup-ms:600000}", initialDelayString = "${jobpro.sync.cleanup-ms:600000}")
+    public void deleteOldChanges() {
+        long before;
+        synchronized (this) {
+            if(newestMs <= 0) {
+                return;
+            }
+            before = newestMs - keepMs;
+        }
+        new TransactionTemplate(transactionManager).execute(status ->
+                cacheChangeRepo.deleteAllMadeBefore(new Date(before)));
+    }
+
+
+    // in a transaction of its own, this is often called from another transaction's afterCommit
+    // if it fails the change itself is still committed and in this node's caches, so it's logged rather than thrown
+    private void publish(List<CacheChange> changes) {
+        if(changes.isEmpty()) {
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.execute(status -> cacheChangeRepo.save(changes));
+        } catch (RuntimeException e) {
+            log.error("could not tell the other nodes about {} {} {}", changes.size(), changes.get(0).getKind(),
+                    changes.get(0).getTargetId(), e);
+        }
+    }
+
+    // reloads whatever the change touched, every update here is idempotent, so seeing a change twice does no harm
+    private void apply(CacheChange change) {
+        try {
+            switch (change.getKind()) {
+                case CacheChange.PERSON :
+                    reloadPerson(change.getUsername());
+                    break;
+                case CacheChange.JOB :
+                    reloadJob(change.getTargetId());
+                    break;
+                default :
+                    log.warn("unknown cache change {}", change.getKind());
+            }
+        } catch (RuntimeException e) {
+            log.warn("could not apply {} change to {}", change.getKind(), change.getTargetId(), e);
+        }
+    }
+
+    // the same caches ResumeChanges updates on the node that made the change
+    private void reloadPerson(String username) {
+        userDetailsCache.evict(username);
+        resumeCache.resumeChanged(username);
+        Person p = personRepo.findResumeByUsername(username);
+        if(p == null) {
+            return;
+        }
+        resumeCounters.evict(p);
+        searchIndex.indexPerson(p);
+        searchIndex.reindexEducationsOf(p, educationRepo.findAllByMyPersonIs(p));
+        if(p.getRole().equals("ROLE_USER")) {
+            skillMatchIndex.putSeeker(p, p.getSkills());
+            jobRecommendations.seekerChanged(p.getId());
+        }
+    }
+
+    // a saved job is indexed again, a deleted one dropped, and the node that saved it is left to match it
+    private void reloadJob(long jobId) {
+        Job job = jobRepo.findWithSkillsById(jobId);
+        if(job == null) {
+            searchIndex.removeJob(jobId);
+            skillMatchIndex.removeJobs(Collections.singletonList(jobId));
+            return;
+        }
+        searchIndex.indexJob(job);
+        skillMatchIndex.putJob(job);
+        if(job.getMatchedAt() == null) {
+            jobMatchService.matchingElsewhere(jobId);
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.security.Principal;
+
+/**
+ * Loads the logged in Person at most once per request.  Almost every route needs the current Person, often several
+ * times, and each personRepo.findByUsername call is another round trip to the db.  A new instance of this bean is
+ * created for every request (the controller gets a proxy), so nothing leaks between users or requests.
+ * Routes that change the current Person should call invalidate() so any later lookup in the same request reloads it.
+ */
+@Component
+@Scope(value = WebApplicationContext.SCOPE_REQUEST, proxyMode = ScopedProxyMode.TARGET_CLASS)
+public class CurrentPersonResolver {
+
+    @Autowired
+    PersonRepo personRepo;
+
+    private Person person;
+
+    // true if person was loaded with its skills
+    private boolean resumeLoaded;
+
+
+    public Person get(Principal principal) {
+        if(person == null || !person.getUsername().equals(principal.getName())) {
+            person = personRepo.findByUsername(principal.getName());
+            resumeLoaded = false;
+        }
+        return person;
+    }
+
+    // same as get, but the Person comes with its skills already loaded, for the pages that show a whole resume
+    public Person getResume(Principal principal) {
+        if(person == null || !resumeLoaded || !person.getUsername().equals(principal.getName())) {
+            person = personRepo.findResumeByUsername(principal.getName());
+            resumeLoaded = true;
+        }
+        return person;
+    }
+
+    public void invalidate() {
+        person = null;
+        resumeLoaded = false;
+    }
+
+}
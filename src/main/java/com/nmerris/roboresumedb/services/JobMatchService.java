@@ -0,0 +1,310 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.models.JobMatch;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.JobMatchRepo;
+import com.nmerris.roboresumedb.repositories.JobRepo;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the JobMatch table up to date in the background, so neither posting a job nor adding a skill waits for the
+ * matching, and pages that show matches just read the saved rows.  The table is kept current incrementally: when a
+ * job is saved only that job's matches are worked out again, when a seeker's skills change only that seeker's.
+ * Call matchLater every time a job is saved and matchSeekerLater every time a seeker's skills change, jobs that are
+ * deleted must have their matches deleted too (see JobService.deletePostings).
+ * With more than one node, runs on different nodes aren't kept apart by the locks below, only by the db: there is at
+ * most one row per job and seeker, so when two nodes' runs would both save the same one, the second run fails and is
+ * tried again.
+ */
+@Service
+public class JobMatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobMatchService.class);
+
+    @Autowired
+    SkillMatchIndex skillMatchIndex;
+
+    @Autowired
+    JobRepo jobRepo;
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    JobMatchRepo jobMatchRepo;
+
+    @Autowired
+    @Qualifier("jobMatchExecutor")
+    Executor executor;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    // how many seekers to show for a job
+    @Value("${jobpro.match.top-k:50}")
+    private int topK;
+
+    // how long to leave a job that another node saved to that node's run before matching it here
+    @Value("${jobpro.match.elsewhere-ms:60000}")
+    private long elsewhereMs;
+
+    // job id -> the latest match run asked for, only that run may save its matches
+    // a job is only in here while a run is queued or running
+    private final Map<Long, Long> latestRunByJobId = new ConcurrentHashMap<>();
+
+    // same thing for seekers, seeker id -> latest run
+    private final Map<Long, Long> latestRunBySeekerId = new ConcurrentHashMap<>();
+
+    // jobs and seekers whose latest run failed, so their saved matches may be out of date, retryStale runs them again
+    private final Set<Long> staleJobIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<Long> staleSeekerIds = ConcurrentHashMap.newKeySet();
+
+    // job id -> when this node heard another node saved it (see CacheSync), that node is matching it
+    private final Map<Long, Long> elsewhereSinceByJobId = new ConcurrentHashMap<>();
+
+    private final AtomicLong runs = new AtomicLong();
+
+    // a job run deletes and re-inserts its job's rows, a seeker run its seeker's rows, which can be for any job.  so a
+    // job run holds its job's stripe, and a seeker run holds every stripe shared and its own seeker's stripe: runs for
+    // different jobs go at the same time, so do runs for different seekers, but a job run and a seeker run never do
+    // (they'd both write the row for that job and seeker), and neither do two runs for the same job or seeker
+    private static final int STRIPES = 64;
+
+    private final ReentrantReadWriteLock[] jobLocks = new ReentrantReadWriteLock[STRIPES];
+
+    private final ReentrantLock[] seekerLocks = new ReentrantLock[STRIPES];
+
+
+    public JobMatchService() {
+        for (int i = 0; i < STRIPES; i++) {
+            jobLocks[i] = new ReentrantReadWriteLock();
+            seekerLocks[i] = new ReentrantLock();
+        }
+    }
+
+
+    // queues up (re)matching a job that was just saved, returns right away
+    public void matchLater(long jobId) {
+        // this run replaces any failed one
+        staleJobIds.remove(jobId);
+        elsewhereSinceByJobId.remove(jobId);
+        long run = runs.incrementAndGet();
+        latestRunByJobId.put(jobId, run);
+        executeAfterCommit(() -> match(jobId, run));
+    }
+
+    // queues up (re)matching a seeker to every job, call after they add or remove skills, returns right away
+    public void matchSeekerLater(long seekerId) {
+        // this run replaces any failed one
+        staleSeekerIds.remove(seekerId);
+        long run = runs.incrementAndGet();
+        latestRunBySeekerId.put(seekerId, run);
+        executeAfterCommit(() -> matchSeeker(seekerId, run));
+    }
+
+    // call when another node saved a job, so this node doesn't start matching it too while that node's run is going
+    public void matchingElsewhere(long jobId) {
+        elsewhereSinceByJobId.put(jobId, System.currentTimeMillis());
+    }
+
+    // a run can fail, ie when a job is deleted while a seeker run uses it, or another node's run saved the same row
+    // first, this tries again every so often until it works
+    @Scheduled(fixedDelayString = "${jobpro.match.retry-ms:10000}", initialDelayString = "${jobpro.match.retry-ms:10000}")
+    public void retryStale() {
+        for (Long jobId : staleJobIds) {
+            matchLater(jobId);
+        }
+        for (Long seekerId : staleSeekerIds) {
+            matchSeekerLater(seekerId);
+        }
+        // jobs whose matches nobody looked at while another node was matching them
+        long expired = System.currentTimeMillis() - elsewhereMs;
+        elsewhereSinceByJobId.values().removeIf(since -> since < expired);
+    }
+
+    // true if the job's matches aren't ready yet
+    // a job that was never matched and isn't queued (ie the app restarted mid match) gets queued again here, unless
+    // another node saved it not long ago, then that node's run is left to finish
+    public boolean isMatching(Job job) {
+        if(latestRunByJobId.containsKey(job.getId())) {
+            return true;
+        }
+        if(job.getMatchedAt() == null) {
+            Long since = elsewhereSinceByJobId.get(job.getId());
+            if(since == null || System.currentTimeMillis() - since > elsewhereMs) {
+                matchLater(job.getId());
+            }
+            return true;
+        }
+        elsewhereSinceByJobId.remove(job.getId());
+        return false;
+    }
+
+    // the best saved matches, best first, empty if isMatching
+    public List<JobMatch> findMatches(long jobId) {
+        return jobMatchRepo.findAllByJobId(jobId, new PageRequest(0, topK));
+    }
+
+    // job id -> number of saved matches, jobs with none are left out
+    public Map<Long, Long> countMatches(Collection<Job> jobs) {
+        Map<Long, Long> counts = new HashMap<>();
+        if(jobs.isEmpty()) {
+            return counts;
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Job job : jobs) {
+            ids.add(job.getId());
+        }
+        for (Object[] row : jobMatchRepo.countAllByJobIds(ids)) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+
+    // the matches are always saved in a transaction of their own: when the pool is full a task runs right away on the
+    // caller's thread (CallerRunsPolicy), which can be inside another transaction's afterCommit, where joining that
+    // finished transaction would mean nothing is ever committed
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transaction;
+    }
+
+    // if the caller is in a transaction the run has to wait for it to commit, or it would not see the changes
+    private void executeAfterCommit(Runnable task) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    executor.execute(task);
+                }
+            });
+        }
+        else {
+            executor.execute(task);
+        }
+    }
+
+    // every seeker who matches the job, straight from SkillMatchIndex
+    private void match(long jobId, long run) {
+        Lock lock = jobLocks[stripe(jobId)].writeLock();
+        lock.lock();
+        try {
+            // a run works out AND saves its matches holding the lock, so a run can never save matches that were worked
+            // out before another run's changes were saved
+            if(!Objects.equals(latestRunByJobId.get(jobId), run)) {
+                // the job was saved again since this run was queued, the newer run will save its own matches
+                return;
+            }
+            Job job = jobRepo.findWithSkillsById(jobId);
+            // deleted before it was matched
+            if(job == null) {
+                return;
+            }
+            skillMatchIndex.putJob(job);
+            Map<Long, int[]> scores = skillMatchIndex.scores(job);
+
+            newTransaction().execute(status -> {
+                jobMatchRepo.deleteAllByJobIds(Collections.singletonList(jobId));
+                List<JobMatch> jobMatches = new ArrayList<>();
+                for (Map.Entry<Long, int[]> score : scores.entrySet()) {
+                    // getReference doesn't query, only the id is needed to save the row
+                    jobMatches.add(new JobMatch(job, entityManager.getReference(Person.class, score.getKey()),
+                            score.getValue()[0], score.getValue()[1]));
+                }
+                jobMatchRepo.save(jobMatches);
+                jobRepo.setMatchedAt(jobId, new Date());
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // most likely the job was deleted while it was being matched, don't leave it in the index if it was
+            // otherwise another node's run got there first, try again unless a newer run is already queued
+            log.warn("could not match job {}", jobId, e);
+            if(!jobRepo.exists(jobId)) {
+                skillMatchIndex.removeJobs(Collections.singletonList(jobId));
+            }
+            else if(Objects.equals(latestRunByJobId.get(jobId), run)) {
+                staleJobIds.add(jobId);
+            }
+        } finally {
+            lock.unlock();
+            latestRunByJobId.remove(jobId, run);
+        }
+    }
+
+    // every job the seeker matches, straight from SkillMatchIndex
+    private void matchSeeker(long seekerId, long run) {
+        // always in the same order, seeker first then the job stripes in order, so two runs can't deadlock
+        Lock seekerLock = seekerLocks[stripe(seekerId)];
+        seekerLock.lock();
+        for (ReentrantReadWriteLock jobLock : jobLocks) {
+            jobLock.readLock().lock();
+        }
+        try {
+            if(!Objects.equals(latestRunBySeekerId.get(seekerId), run)) {
+                return;
+            }
+            Map<Long, int[]> scores = skillMatchIndex.jobScores(seekerId);
+
+            newTransaction().execute(status -> {
+                jobMatchRepo.deleteAllBySeekerId(seekerId);
+                List<JobMatch> jobMatches = new ArrayList<>();
+                for (Map.Entry<Long, int[]> score : scores.entrySet()) {
+                    jobMatches.add(new JobMatch(entityManager.getReference(Job.class, score.getKey()),
+                            entityManager.getReference(Person.class, seekerId),
+                            score.getValue()[0], score.getValue()[1]));
+                }
+                jobMatchRepo.save(jobMatches);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // most likely one of the jobs was deleted while the seeker was being matched, or another node's run saved
+            // one of the same rows first.  their old matches are kept until a retry works, unless a newer run is
+            // already queued
+            log.warn("could not match seeker {}, will try again", seekerId, e);
+            if(Objects.equals(latestRunBySeekerId.get(seekerId), run)) {
+                staleSeekerIds.add(seekerId);
+            }
+        } finally {
+            for (int i = jobLocks.length - 1; i >= 0; i--) {
+                jobLocks[i].readLock().unlock();
+            }
+            seekerLock.unlock();
+            latestRunBySeekerId.remove(seekerId, run);
+        }
+    }
+
+    private static int stripe(long id) {
+        return (int) (id & (STRIPES - 1));
+    }
+
+}
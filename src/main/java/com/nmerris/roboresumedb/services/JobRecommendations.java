@@ -0,0 +1,227 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.JobRecommendation;
+import com.nmerris.roboresumedb.KeysetCursor;
+import com.nmerris.roboresumedb.ResultPage;
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.JobRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The /recommendedjobs list: every job a seeker meets at least one skill of, best fit first, ranked the same way
+ * SkillMatchIndex ranks seekers for a job.  The ranking comes straight from SkillMatchIndex (no db query), and is
+ * cached per seeker so paging through it only loads each page's jobs.  A seeker's cached ranking is dropped when their
+ * skills change (call seekerChanged), and every cached ranking is redone after any job is saved or deleted.
+ * Only each seeker's best jobs are ranked (jobpro.recommendations.max-jobs), so a cached ranking has a fixed max size.
+ */
+@Service
+public class JobRecommendations {
+
+    @Autowired
+    SkillMatchIndex skillMatchIndex;
+
+    @Autowired
+    JobRepo jobRepo;
+
+    // max number of jobs shown on one page
+    @Value("${jobpro.page-size:20}")
+    private int pageSize;
+
+    // how many of a seeker's best jobs are ranked, the list ends there
+    @Value("${jobpro.recommendations.max-jobs:200}")
+    private int maxJobs;
+
+    // seeker id -> their ranked jobs, in least recently used order
+    private final Map<Long, Ranking> rankingsBySeekerId;
+
+    private static final int STRIPES = 256;
+
+    // one per stripe of seeker ids, goes up every time a seeker in the stripe changes, so a ranking worked out while
+    // one of them changed is not cached.  only written holding rankingsBySeekerId's lock
+    private final AtomicLongArray seekerVersions = new AtomicLongArray(STRIPES);
+
+
+    public JobRecommendations(@Value("${jobpro.recommendations.max-entries:10000}") int maxEntries) {
+        rankingsBySeekerId = new LinkedHashMap<Long, Ranking>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Ranking> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+
+    // one page of recommendations, after/before are cursors from a previous page, if both are null it's the first page
+    public ResultPage<JobRecommendation> findPage(Person seeker, String after, String before) {
+        Ranking ranking = ranking(seeker.getId());
+
+        KeysetCursor afterCursor = KeysetCursor.decode(after);
+        KeysetCursor beforeCursor = afterCursor == null ? KeysetCursor.decode(before) : null;
+        boolean backwards = beforeCursor != null;
+
+        // one more than a page, so ResultPage can tell if there's another page
+        int from;
+        int to;
+        if(backwards) {
+            to = ranking.indexOf(beforeCursor);
+            from = Math.max(0, to - pageSize - 1);
+        }
+        else {
+            from = afterCursor == null ? 0 : ranking.indexOf(afterCursor);
+            // indexOf finds the cursor's own row, start just after it
+            if(afterCursor != null && from < ranking.size() && ranking.isAt(from, afterCursor)) {
+                from++;
+            }
+            to = Math.min(ranking.size(), from + pageSize + 1);
+        }
+        List<Integer> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.add(i);
+        }
+        ResultPage<Integer> rowPage = ResultPage.of(rows, pageSize, backwards, afterCursor != null || backwards,
+                i -> ranking.cursor(i).encode());
+
+        // load the page of jobs (and their skills) in one query and put them back in ranked order
+        List<JobRecommendation> results = new ArrayList<>();
+        if(rowPage.getItems().isEmpty()) {
+            return rowPage.withItems(results);
+        }
+        List<Long> ids = new ArrayList<>();
+        for (int i : rowPage.getItems()) {
+            ids.add(ranking.jobIds[i]);
+        }
+        Map<Long, Job> jobsById = new HashMap<>();
+        for (Job job : jobRepo.findAllWithSkillsByIdIn(ids)) {
+            jobsById.put(job.getId(), job);
+        }
+        for (int i : rowPage.getItems()) {
+            Job job = jobsById.get(ranking.jobIds[i]);
+            // may have been deleted since the ranking was cached
+            if(job != null) {
+                results.add(new JobRecommendation(job, ranking.ratingMatches(i), ranking.nameMatches(i)));
+            }
+        }
+        return rowPage.withItems(results);
+    }
+
+    // call after a seeker adds or removes skills, AFTER SkillMatchIndex has been updated
+    public void seekerChanged(long seekerId) {
+        synchronized (rankingsBySeekerId) {
+            seekerVersions.incrementAndGet(stripe(seekerId));
+            rankingsBySeekerId.remove(seekerId);
+        }
+    }
+
+
+    // the cached ranking, or a new one if there isn't one or it was built before the last job change
+    // the ranking is worked out without holding the lock, so seekers' page loads don't wait on each other, and is only
+    // cached if no job and no seeker in its stripe changed meanwhile (same idea as ResumeCache), so a ranking worked
+    // out from skills that have since changed can never be cached after seekerChanged dropped the old one
+    private Ranking ranking(long seekerId) {
+        long jobsVersion = skillMatchIndex.getJobsVersion();
+        long seekerVersion = seekerVersions.get(stripe(seekerId));
+        synchronized (rankingsBySeekerId) {
+            Ranking ranking = rankingsBySeekerId.get(seekerId);
+            if(ranking != null && ranking.jobsVersion == jobsVersion) {
+                return ranking;
+            }
+        }
+
+        Ranking ranking = new Ranking(jobsVersion, skillMatchIndex.jobScores(seekerId, maxJobs));
+        synchronized (rankingsBySeekerId) {
+            if(skillMatchIndex.getJobsVersion() == jobsVersion && seekerVersions.get(stripe(seekerId)) == seekerVersion) {
+                rankingsBySeekerId.put(seekerId, ranking);
+            }
+        }
+        return ranking;
+    }
+
+    private static int stripe(long seekerId) {
+        return (int) (seekerId & (STRIPES - 1));
+    }
+
+
+    /**
+     * One seeker's jobs, best first: most skills met at the posted rating, then most skills held at any rating, then
+     * lowest job id.  Parallel arrays, the score of row i is packed into one int, rating matches in the high 16 bits.
+     */
+    private static final class Ranking {
+
+        private final long jobsVersion;
+        private final long[] jobIds;
+        private final int[] scores;
+
+        private Ranking(long jobsVersion, Map<Long, int[]> scoresByJobId) {
+            this.jobsVersion = jobsVersion;
+            List<Map.Entry<Long, int[]>> entries = new ArrayList<>(scoresByJobId.entrySet());
+            entries.sort(Comparator
+                    .comparingInt((Map.Entry<Long, int[]> e) -> -e.getValue()[0])
+                    .thenComparingInt(e -> -e.getValue()[1])
+                    .thenComparing(Map.Entry::getKey));
+            jobIds = new long[entries.size()];
+            scores = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                jobIds[i] = entries.get(i).getKey();
+                scores[i] = entries.get(i).getValue()[0] << 16 | entries.get(i).getValue()[1];
+            }
+        }
+
+        int size() {
+            return jobIds.length;
+        }
+
+        int ratingMatches(int i) {
+            return scores[i] >>> 16;
+        }
+
+        int nameMatches(int i) {
+            return scores[i] & 0xFFFF;
+        }
+
+        KeysetCursor cursor(int i) {
+            return new KeysetCursor(Integer.toString(scores[i]), jobIds[i]);
+        }
+
+        boolean isAt(int i, KeysetCursor cursor) {
+            return compare(i, cursor) == 0;
+        }
+
+        // the first row that is not sorted before the cursor, binary search, the cursor's row may be long gone
+        int indexOf(KeysetCursor cursor) {
+            int low = 0;
+            int high = jobIds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if(compare(middle, cursor) < 0) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // < 0 if row i sorts before the cursor
+        private int compare(int i, KeysetCursor cursor) {
+            int score;
+            try {
+                score = Integer.parseInt(cursor.getSortKey());
+            } catch (NumberFormatException e) {
+                // tampered with, treat it like the very first row
+                score = Integer.MAX_VALUE;
+            }
+            if(scores[i] != score) {
+                return scores[i] > score ? -1 : 1;
+            }
+            return Long.compare(jobIds[i], cursor.getId());
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.KeysetCursor;
+import com.nmerris.roboresumedb.ResultPage;
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.JobMatchRepo;
+import com.nmerris.roboresumedb.repositories.JobRepo;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+@Service
+public class JobService {
+
+    @Autowired
+    JobRepo jobRepo;
+
+    @Autowired
+    JobMatchRepo jobMatchRepo;
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    SkillMatchIndex skillMatchIndex;
+
+    @Autowired
+    CacheSync cacheSync;
+
+    // max number of job postings shown on one page
+    @Value("${jobpro.page-size:20}")
+    private int pageSize;
+
+
+    /**
+     * One page of a recruiter's job postings, sorted by employer like Job.compareTo.  Uses keyset paging: the query
+     * seeks straight to the rows after (or before) the cursor, and asks for one extra row to know if there's another
+     * page, so the cost of a page does not depend on how many postings the recruiter has.
+     * The jobs come with their skills, all loaded by one more query (Job.skills has a @BatchSize).
+     * @param after cursor from the previous page's 'next' link, or null
+     * @param before cursor from the previous page's 'previous' link, or null
+     */
+    @Transactional(readOnly = true)
+    public ResultPage<Job> findPostings(Person recruiter, String after, String before) {
+        KeysetCursor afterCursor = KeysetCursor.decode(after);
+        KeysetCursor beforeCursor = afterCursor == null ? KeysetCursor.decode(before) : null;
+        PageRequest limit = new PageRequest(0, pageSize + 1);
+
+        List<Job> jobs;
+        if(afterCursor != null) {
+            jobs = jobRepo.findPostingsAfter(recruiter, afterCursor.getSortKey(), afterCursor.getId(), limit);
+        }
+        else if(beforeCursor != null) {
+            // comes back closest to the cursor first, flip it back to display order
+            jobs = new ArrayList<>(jobRepo.findPostingsBefore(recruiter, beforeCursor.getSortKey(), beforeCursor.getId(), limit));
+            Collections.reverse(jobs);
+        }
+        else {
+            jobs = jobRepo.findPostings(recruiter, limit);
+        }
+        for (Job job : jobs) {
+            Hibernate.initialize(job.getSkills());
+        }
+
+        return ResultPage.of(jobs, pageSize, beforeCursor != null, afterCursor != null || beforeCursor != null,
+                job -> new KeysetCursor(job.getEmployer().toLowerCase(Locale.ROOT), job.getId()).encode());
+    }
+
+    // one of a recruiter's jobs, with its skills, null if there's no such job or someone else posted it
+    public Job findPosting(Person recruiter, long id) {
+        Job job = jobRepo.findPosting(id, recruiter);
+        if(job != null) {
+            // the lazy Person that came with the job can't be loaded once this returns, it's the recruiter anyway
+            job.setMyPerson(recruiter);
+        }
+        return job;
+    }
+
+    /**
+     * Deletes some of a recruiter's job postings with four statements: find which of the ids the recruiter owns,
+     * delete their saved matches and their rows from the job/skill join table, then delete the jobs.  No Job or Skill is loaded, so the cost
+     * does not depend on how many skills or jobs there are.  All or nothing, in one transaction.
+     * Ids that don't exist (ie already deleted) or belong to another recruiter are ignored.
+     * @return the number of jobs deleted
+     */
+    @Transactional
+    public int deletePostings(Person recruiter, Collection<Long> jobIds) {
+        if(jobIds == null || jobIds.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ownedIds = jobRepo.findPostingIds(jobIds, recruiter);
+        if(ownedIds.isEmpty()) {
+            return 0;
+        }
+        jobMatchRepo.deleteAllByJobIds(ownedIds);
+        jobRepo.unlinkPostingSkills(ownedIds, recruiter.getId());
+        int deleted = jobRepo.deletePostings(ownedIds, recruiter);
+
+        // the in memory indexes only drop the jobs once they're really gone, a rollback leaves them as they were
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (Long id : ownedIds) {
+                    searchIndex.removeJob(id);
+                }
+                skillMatchIndex.removeJobs(ownedIds);
+                cacheSync.jobsChanged(ownedIds);
+            }
+        });
+        return deleted;
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.nmerris.roboresumedb.services;
+
+import io.prometheus.client.Summary;
+
+/**
+ * Latency summaries shown on /prometheus, each with its p50, p95 and p99 over the last 10 minutes, plus a count and
+ * total so rates and averages can be worked out too.  Registered once per JVM, in the default prometheus registry.
+ *  - route_latency_seconds{method, route}: each request, from when its controller method is picked until its view is
+ *    rendered, see WebConfiguration
+ *  - repository_latency_seconds{repository, method}: each repository call, see MetricsConfiguration
+ *  - connection_wait_seconds{pool}: how long each transaction waited for a connection from the primary's or a
+ *    replica's pool, see ReplicaRouter
+ */
+public final class LatencyMetrics {
+
+    public static final Summary ROUTES = summary("route_latency_seconds",
+            "Time to handle a request, by controller mapping", "method", "route");
+
+    public static final Summary REPOSITORIES = summary("repository_latency_seconds",
+            "Time spent in a repository method", "repository", "method");
+
+    public static final Summary CONNECTION_WAIT = summary("connection_wait_seconds",
+            "Time spent waiting for a db connection from a pool", "pool");
+
+
+    private LatencyMetrics() {
+    }
+
+
+    private static Summary summary(String name, String help, String... labelNames) {
+        return Summary.build(name, help)
+                .labelNames(labelNames)
+                .quantile(0.5, 0.05)
+                .quantile(0.95, 0.01)
+                .quantile(0.99, 0.001)
+                .register();
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.nmerris.roboresumedb.services;
+
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.SessionRepository;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the real session store so a request that only reads its session doesn't write it back.  Spring Session sets
+ * every session's last access time on every request, and the jdbc store then runs an UPDATE for each request even
+ * when nothing in the session changed.  Here the new time is only written once the stored one is more than touchMs
+ * old, or along with a real change (an attribute set or removed, ie logging in).
+ * So a session can expire up to touchMs early, the stored last access time is never more than that far behind.
+ */
+public class LazySessionRepository implements SessionRepository<ExpiringSession> {
+
+    private final SessionRepository<ExpiringSession> delegate;
+    private final long touchMs;
+
+    public LazySessionRepository(SessionRepository<ExpiringSession> delegate, long touchMs) {
+        this.delegate = delegate;
+        this.touchMs = touchMs;
+    }
+
+    @Override
+    public ExpiringSession createSession() {
+        // a new session is always saved
+        LazySession session = new LazySession(delegate.createSession());
+        session.changed = true;
+        return session;
+    }
+
+    @Override
+    public void save(ExpiringSession session) {
+        LazySession lazySession = (LazySession) session;
+        if(lazySession.changed || lazySession.lastAccessedTime - lazySession.storedLastAccessedTime >= touchMs) {
+            lazySession.delegate.setLastAccessedTime(lazySession.lastAccessedTime);
+            delegate.save(lazySession.delegate);
+            lazySession.storedLastAccessedTime = lazySession.lastAccessedTime;
+            lazySession.changed = false;
+        }
+    }
+
+    @Override
+    public ExpiringSession getSession(String id) {
+        ExpiringSession session = delegate.getSession(id);
+        return session == null ? null : new LazySession(session);
+    }
+
+    @Override
+    public void delete(String id) {
+        delegate.delete(id);
+    }
+
+
+    // the last access time is kept here until it's worth writing, everything else goes straight to the real session
+    private static class LazySession implements ExpiringSession {
+
+        private final ExpiringSession delegate;
+        private long storedLastAccessedTime;
+        private long lastAccessedTime;
+        private boolean changed;
+
+        LazySession(ExpiringSession delegate) {
+            this.delegate = delegate;
+            storedLastAccessedTime = delegate.getLastAccessedTime();
+            lastAccessedTime = storedLastAccessedTime;
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+            changed = true;
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            delegate.removeAttribute(attributeName);
+            changed = true;
+        }
+
+        @Override
+        public long getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(long lastAccessedTime) {
+            this.lastAccessedTime = lastAccessedTime;
+        }
+
+        @Override
+        public long getLastAccessedTime() {
+            return lastAccessedTime;
+        }
+
+        @Override
+        public void setMaxInactiveIntervalInSeconds(int interval) {
+            delegate.setMaxInactiveIntervalInSeconds(interval);
+            changed = true;
+        }
+
+        @Override
+        public int getMaxInactiveIntervalInSeconds() {
+            return delegate.getMaxInactiveIntervalInSeconds();
+        }
+
+        @Override
+        public boolean isExpired() {
+            int interval = getMaxInactiveIntervalInSeconds();
+            return interval >= 0
+                    && System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(interval) >= lastAccessedTime;
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.nmerris.roboresumedb.services;
+
+import org.apache.tomcat.jdbc.pool.interceptor.AbstractCreateStatementInterceptor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tomcat jdbc pool interceptor that reports every statement executed, how long it took, and every row read back to
+ * QueryStats.  Turned on with spring.datasource.tomcat.jdbc-interceptors, the pool creates it itself so it can't be a
+ * spring bean.  Costs a ThreadLocal lookup per statement and per row, which does nothing unless the thread is measuring.
+ */
+public class QueryCountingInterceptor extends AbstractCreateStatementInterceptor {
+
+    @Override
+    public Object createStatement(Object proxy, Method method, Object[] args, Object statement, long time) {
+        Class<?> type = compare(PREPARE_STATEMENT, method) ? PreparedStatement.class
+                : compare(PREPARE_CALL, method) ? CallableStatement.class : Statement.class;
+        return wrap(type, new StatementHandler(statement));
+    }
+
+    @Override
+    public void closeInvoked() {
+        // nothing is held per connection
+    }
+
+
+    private static Object wrap(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(QueryCountingInterceptor.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    // times each execute, and wraps the result sets it hands out so their rows are counted
+    private class StatementHandler implements InvocationHandler {
+
+        private final Object statement;
+
+        private StatementHandler(Object statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            if(isExecute(method, false)) {
+                long start = System.nanoTime();
+                try {
+                    result = invokeTarget(statement, method, args);
+                } finally {
+                    QueryStats.statementExecuted(System.nanoTime() - start);
+                }
+            }
+            else {
+                result = invokeTarget(statement, method, args);
+            }
+            if(result instanceof ResultSet) {
+                ResultSet resultSet = (ResultSet) result;
+                return wrap(ResultSet.class, (rsProxy, rsMethod, rsArgs) -> {
+                    Object rsResult = invokeTarget(resultSet, rsMethod, rsArgs);
+                    if(rsMethod.getName().equals("next") && Boolean.TRUE.equals(rsResult)) {
+                        QueryStats.rowFetched();
+                    }
+                    return rsResult;
+                });
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.nmerris.roboresumedb.services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of sql statements, rows read and time spent in the db for each route, ie "GET /finalresume" or
+ * "GET /jobmatches/{id}".  The jdbc pool reports every statement run on a thread that is measuring (see
+ * QueryCountingInterceptor), WebConfiguration measures each request from when its controller method is picked until
+ * its view is rendered, so lazy loads in templates count too, but the login checks in the security filters don't.
+ * Statements run by background threads (ie job matching) are not counted against any route.
+ * Totals are shown on /metrics as sql.<route>.*, and tests can check one request's counts with last(route) to keep a
+ * route within its query budget, see QueryBudgetTest.
+ */
+@Service
+public class QueryStats {
+
+    // the counts for the request this thread is handling, null if it isn't measuring
+    private static final ThreadLocal<Counts> current = new ThreadLocal<>();
+
+    // route -> totals since startup
+    private final Map<String, RouteTotals> totalsByRoute = new ConcurrentHashMap<>();
+
+    // route -> counts for the most recent request
+    private final Map<String, Counts> lastByRoute = new ConcurrentHashMap<>();
+
+
+    // called by QueryCountingInterceptor after each statement, on whatever thread ran it
+    static void statementExecuted(long nanos) {
+        Counts counts = current.get();
+        if(counts != null) {
+            counts.queries++;
+            counts.nanos += nanos;
+        }
+    }
+
+    // called by QueryCountingInterceptor for every row read from a result set
+    static void rowFetched() {
+        Counts counts = current.get();
+        if(counts != null) {
+            counts.rows++;
+        }
+    }
+
+
+    // starts counting this thread's statements, replaces any counts this thread had not stopped
+    public void start() {
+        current.set(new Counts());
+    }
+
+    // stops counting this thread's statements and adds them to the route's totals, returns null if start was never
+    // called
+    public Counts stop(String route) {
+        Counts counts = current.get();
+        if(counts == null) {
+            return null;
+        }
+        current.remove();
+        totalsByRoute.computeIfAbsent(route, r -> new RouteTotals()).add(counts);
+        lastByRoute.put(route, counts);
+        return counts;
+    }
+
+    // the counts for the most recent request to the route, null if there wasn't one
+    public Counts last(String route) {
+        return lastByRoute.get(route);
+    }
+
+    // sorted by route
+    public Map<String, RouteTotals> getTotals() {
+        return new TreeMap<>(totalsByRoute);
+    }
+
+
+    /**
+     * One request's statements.  Only ever changed by the thread handling the request.
+     */
+    public static class Counts {
+
+        private long queries;
+        private long rows;
+        private long nanos;
+
+        public long getQueries() {
+            return queries;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMillis() {
+            return nanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return queries + " queries, " + rows + " rows, " + getMillis() + " ms";
+        }
+    }
+
+    /**
+     * Every request to one route, added up.
+     */
+    public static class RouteTotals {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        // most queries any one request ran
+        private final LongAccumulator maxQueries = new LongAccumulator(Math::max, 0);
+
+        private void add(Counts counts) {
+            requests.increment();
+            queries.add(counts.queries);
+            rows.add(counts.rows);
+            nanos.add(counts.nanos);
+            maxQueries.accumulate(counts.queries);
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public long getQueries() {
+            return queries.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getMillis() {
+            return nanos.sum() / 1_000_000;
+        }
+
+        public long getMaxQueries() {
+            return maxQueries.get();
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.Week4ProjectApplication;
+import io.prometheus.client.Summary;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sends the read only transactions started by the app's own services (ie @Transactional(readOnly = true) on
+ * UserService.findResume) to one of the read replicas, round robin, and everything else to the primary.  Spring
+ * Data also wraps each repository finder in its own read only transaction, those stay on the primary, so a read
+ * right after a write in the same request (ie counting a seeker's educations after saving one) always sees it.
+ *
+ * A replica is only used while it's no more than maxLagMs behind the primary, checked every
+ * jobpro.datasource.replica-check-ms by running lagQuery on it.  A replica that's too far behind, can't be reached or
+ * fails to give out a connection is skipped until a later check finds it caught up, if none are usable the primary
+ * serves the read.
+ *
+ * Anything kept in memory after the request (ResumeCache's rendered page, ResumeCounters) must not come from a replica
+ * that's a little behind, or it stays stale until the next change.  Such reads run in onPrimary, or are only cached
+ * when replicaReadsOnThread shows they didn't use a replica.
+ *
+ * The app's one DataSource gets every connection from here, through a LazyConnectionDataSourceProxy (see
+ * DataSourceConfiguration): the transaction manager asks for its connection before the transaction is marked read
+ * only, the proxy only asks for the real one when the first statement runs.
+ */
+public class ReplicaRouter implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private static final String APP_PACKAGE = Week4ProjectApplication.class.getPackage().getName() + ".";
+
+    // the request being handled on this thread, null on other threads (ie the job matching threads)
+    private static final ThreadLocal<RequestRouting> currentRequest = new ThreadLocal<>();
+
+    // what this thread has read from replicas and whether it's in onPrimary, on every thread
+    private static final ThreadLocal<ThreadRouting> currentThread = ThreadLocal.withInitial(ThreadRouting::new);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMs;
+    private final String lagQuery;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, long maxLagMs,
+                          String lagQuery) {
+        this.primary = primary;
+        List<Replica> list = new ArrayList<>();
+        replicas.forEach((name, pool) -> list.add(new Replica(name, pool)));
+        this.replicas = Collections.unmodifiableList(list);
+        this.maxLagMs = maxLagMs;
+        this.lagQuery = lagQuery;
+    }
+
+
+    // a connection from the pool the current transaction should use
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    // same, as another db user, a null username is the pool's own user.  whether a pool really hands out a connection
+    // for another user is up to spring.datasource.tomcat.alternate-username-allowed
+    public Connection getConnection(String username, String password) throws SQLException {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        String transaction = TransactionSynchronizationManager.getCurrentTransactionName();
+        RequestRouting request = currentRequest.get();
+        ThreadRouting thread = currentThread.get();
+        if(readOnly && transaction != null && transaction.startsWith(APP_PACKAGE) && !replicas.isEmpty()) {
+            if((request == null || !request.primaryOnly) && thread.onPrimary == 0) {
+                int start = next.getAndIncrement();
+                for (int i = 0; i < replicas.size(); i++) {
+                    Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+                    if(replica.usable) {
+                        try {
+                            Connection connection = borrow(replica.name, replica.pool, username, password);
+                            replicaReads.increment();
+                            thread.replicaReads++;
+                            return connection;
+                        } catch (SQLException e) {
+                            replica.failed(e);
+                        }
+                    }
+                }
+            }
+            fallbackReads.increment();
+        }
+        else if(request != null && !readOnly && TransactionSynchronizationManager.isActualTransactionActive()) {
+            request.wrote = true;
+            request.primaryOnly = true;
+        }
+        return borrow("primary", primary, username, password);
+    }
+
+    private static Connection borrow(String name, DataSource pool, String username, String password)
+            throws SQLException {
+        Summary.Timer timer = LatencyMetrics.CONNECTION_WAIT.labels(name).startTimer();
+        try {
+            return username == null ? pool.getConnection() : pool.getConnection(username, password);
+        } finally {
+            timer.observeDuration();
+        }
+    }
+
+
+    // measures how far behind each replica is, and takes it out of (or puts it back into) use
+    @Scheduled(fixedDelayString = "${jobpro.datasource.replica-check-ms:2000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                rs.next();
+                replica.checked(rs.getLong(1));
+            } catch (SQLException e) {
+                replica.failed(e);
+            }
+        }
+    }
+
+
+    // called at the start and end of every request, see WebConfiguration
+    // wroteRecently: the user wrote something in the last few seconds, their replica reads go to the primary
+    public static void startRequest(boolean wroteRecently) {
+        RequestRouting request = new RequestRouting();
+        request.primaryOnly = wroteRecently;
+        currentRequest.set(request);
+    }
+
+    // true if the request so far has run a write transaction
+    public static boolean wroteInRequest() {
+        RequestRouting request = currentRequest.get();
+        return request != null && request.wrote;
+    }
+
+    public static void endRequest() {
+        currentRequest.remove();
+    }
+
+    // runs read with every read only transaction on the primary, for reads whose result is kept in memory
+    public static <T> T onPrimary(Supplier<T> read) {
+        ThreadRouting thread = currentThread.get();
+        thread.onPrimary++;
+        try {
+            return read.get();
+        } finally {
+            thread.onPrimary--;
+        }
+    }
+
+    // how many reads on this thread have gone to a replica so far, the same before and after a read means it came
+    // from the primary
+    public static long replicaReadsOnThread() {
+        return currentThread.get().replicaReads;
+    }
+
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    // every pool by name, the primary first
+    public Map<String, DataSource> getPools() {
+        Map<String, DataSource> pools = new LinkedHashMap<>();
+        pools.put("primary", primary);
+        for (Replica replica : replicas) {
+            pools.put(replica.name, replica.pool);
+        }
+        return pools;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    // read only service transactions that went to a replica
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    // read only service transactions that had to use the primary, because no replica was usable or the user had
+    // just written something
+    public long getFallbackReads() {
+        return fallbackReads.sum();
+    }
+
+    @Override
+    public void destroy() {
+        primary.close();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+
+    // once a request writes, the rest of it reads from the primary too, so it sees what it just wrote
+    private static class RequestRouting {
+        private boolean primaryOnly;
+        private boolean wrote;
+    }
+
+    private static class ThreadRouting {
+        private long replicaReads;
+        // how many onPrimary calls deep this thread is
+        private int onPrimary;
+    }
+
+    public class Replica {
+
+        private final String name;
+        private final DataSource pool;
+        // not used until the first check says it's caught up
+        private volatile boolean usable;
+        private volatile long lagMs = -1;
+
+        Replica(String name, DataSource pool) {
+            this.name = name;
+            this.pool = pool;
+        }
+
+        private void checked(long lagMs) {
+            this.lagMs = lagMs;
+            boolean caughtUp = lagMs <= maxLagMs;
+            if(caughtUp != usable) {
+                if(caughtUp) {
+                    log.info("replica {} is {} ms behind, using it for reads", name, lagMs);
+                }
+                else {
+                    log.warn("replica {} is {} ms behind, reads go to the primary until it catches up", name, lagMs);
+                }
+            }
+            usable = caughtUp;
+        }
+
+        private void failed(SQLException e) {
+            if(usable) {
+                log.warn("replica {} failed, reads go to the primary until it's back", name, e);
+            }
+            usable = false;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUsable() {
+            return usable;
+        }
+
+        // at the last check, -1 if it has never answered
+        public long getLagMs() {
+            return lagMs;
+        }
+    }
+
+}
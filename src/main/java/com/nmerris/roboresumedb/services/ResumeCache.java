@@ -0,0 +1,146 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.support.RequestContext;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+import org.thymeleaf.spring4.context.SpringWebContext;
+import org.thymeleaf.spring4.naming.SpringContextVariableNames;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Rendered final resume pages, so viewing the same resume again doesn't load the Person and all its collections and
+ * re-render finalresume.html every time.
+ * Each username has a resume version that goes up every time anything on their resume changes, every route that adds,
+ * updates or deletes resume records must call resumeChanged.  The cached html is only used if it was rendered at the
+ * current version, and the version is also the page's ETag, so a browser that already has the current version gets a
+ * 304 without any db or template work.
+ * Versions come from one counter shared by every username, so a version is never handed out twice.  Only the most
+ * recently used versions are kept, a username that isn't kept is at the newest version that was dropped, which is at
+ * least as new as anything that username was ever at, so a browser's old ETag can never match a page that has since
+ * changed.  Another node's changes bump the version here too, through CacheSync.
+ */
+@Service
+public class ResumeCache {
+
+    @Autowired
+    SpringTemplateEngine templateEngine;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Autowired
+    ServletContext servletContext;
+
+    // versions only live in memory, so they start over when the app restarts, this goes in the ETag too so a browser
+    // can't hold on to a page from before the restart that happens to have the same version number
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    // username -> resume version, least recently used is dropped first when full
+    private final Map<String, Long> versionsByUsername;
+
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    // the newest version dropped from versionsByUsername, the version of every username that isn't in there
+    // only written holding versionsByUsername's lock
+    private volatile long droppedVersion;
+
+    // username -> the last page rendered for that username, least recently viewed is dropped first when full
+    private final Map<String, RenderedResume> pagesByUsername;
+
+    private final CacheStats stats = new CacheStats();
+
+
+    public ResumeCache(@Value("${jobpro.resume-cache.max-entries:1000}") int maxEntries,
+                       @Value("${jobpro.resume-cache.max-versions:100000}") int maxVersions) {
+        versionsByUsername = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if(size() > maxVersions) {
+                    droppedVersion = Math.max(droppedVersion, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        });
+        pagesByUsername = Collections.synchronizedMap(new LinkedHashMap<String, RenderedResume>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RenderedResume> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+
+    // call after every change to a Person's resume: personal details, eds, work experiences, skills, start over
+    public void resumeChanged(String username) {
+        versionsByUsername.put(username, lastVersion.incrementAndGet());
+        pagesByUsername.remove(username);
+    }
+
+    // strong ETag for the current version of this username's resume, quotes included
+    public String etag(String username) {
+        return "\"" + bootId + "-" + version(username) + "\"";
+    }
+
+    /**
+     * The rendered finalresume.html for this username, from the cache if it's current, otherwise model is called to
+     * build the page model (this is where the db work happens) and the page is rendered and cached.
+     */
+    public String get(String username, Supplier<Map<String, Object>> model,
+                      HttpServletRequest request, HttpServletResponse response) {
+        long version = version(username);
+        RenderedResume cached = pagesByUsername.get(username);
+        if(cached != null && cached.version == version) {
+            stats.hit();
+            return cached.html;
+        }
+        stats.miss();
+
+        Map<String, Object> variables = new HashMap<>(model.get());
+        // same as ThymeleafView adds, for any #themes or url expressions that need it
+        variables.put(SpringContextVariableNames.SPRING_REQUEST_CONTEXT,
+                new RequestContext(request, response, servletContext, variables));
+        String html = templateEngine.process("finalresume",
+                new SpringWebContext(request, response, servletContext, request.getLocale(), variables, applicationContext));
+
+        // the resume may have changed while rendering, only cache it if it's still current
+        if(version(username) == version) {
+            pagesByUsername.put(username, new RenderedResume(version, html));
+        }
+        return html;
+    }
+
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+
+    private long version(String username) {
+        Long version = versionsByUsername.get(username);
+        return version == null ? droppedVersion : version;
+    }
+
+
+    private static final class RenderedResume {
+
+        private final long version;
+        private final String html;
+
+        private RenderedResume(long version, String html) {
+            this.version = version;
+            this.html = html;
+        }
+    }
+
+}
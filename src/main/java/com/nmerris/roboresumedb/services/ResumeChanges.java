@@ -0,0 +1,113 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.models.EducationAchievement;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.models.Skill;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tells every in memory cache about a change to a Person's details or resume, in one place, so a route can't update
+ * some of them and forget the rest.  Call once the change is committed.  Each method updates the caches that change
+ * touches on this node (SearchIndex, SkillMatchIndex, JobRecommendations, ResumeCounters, UserDetailsCache), then drops
+ * the rendered resume (ResumeCache) and tells the other nodes through CacheSync, which reload the same caches the next
+ * time they poll (see jobpro.sync.poll-ms).
+ */
+@Service
+public class ResumeChanges {
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    SkillMatchIndex skillMatchIndex;
+
+    @Autowired
+    JobMatchService jobMatchService;
+
+    @Autowired
+    JobRecommendations jobRecommendations;
+
+    @Autowired
+    ResumeCounters resumeCounters;
+
+    @Autowired
+    ResumeCache resumeCache;
+
+    @Autowired
+    UserDetailsCache userDetailsCache;
+
+    @Autowired
+    CacheSync cacheSync;
+
+
+    // name or email, the login details have them too
+    public void detailsChanged(Person p) {
+        searchIndex.indexPerson(p);
+        userDetailsCache.evict(p.getUsername());
+        changed(p);
+    }
+
+    // isNew: added rather than edited, an edit doesn't change the count
+    public void educationSaved(Person p, EducationAchievement ea, boolean isNew) {
+        searchIndex.indexEducation(ea);
+        if(isNew) {
+            resumeCounters.edAchievementAdded(p);
+        }
+        changed(p);
+    }
+
+    public void educationDeleted(Person p, long id) {
+        searchIndex.removeEducation(p, id);
+        resumeCounters.edAchievementRemoved(p);
+        changed(p);
+    }
+
+    public void workExperienceSaved(Person p, boolean isNew) {
+        if(isNew) {
+            resumeCounters.workExperienceAdded(p);
+        }
+        changed(p);
+    }
+
+    public void workExperienceDeleted(Person p) {
+        resumeCounters.workExperienceRemoved(p);
+        changed(p);
+    }
+
+    public void skillAdded(Person p, Skill skill) {
+        skillMatchIndex.addSeekerSkill(p, skill);
+        skillsChanged(p);
+        resumeCounters.skillAdded(p);
+        changed(p);
+    }
+
+    public void skillRemoved(Person p, Skill skill) {
+        skillMatchIndex.removeSeekerSkill(p, skill);
+        skillsChanged(p);
+        resumeCounters.skillRemoved(p);
+        changed(p);
+    }
+
+    // everything on the resume was wiped, see UserService.startOver
+    public void startedOver(Person p) {
+        skillMatchIndex.removeSeeker(p);
+        skillsChanged(p);
+        searchIndex.removeEducationsOf(p);
+        resumeCounters.reset(p);
+        changed(p);
+    }
+
+
+    // after SkillMatchIndex has the seeker's new skills
+    private void skillsChanged(Person p) {
+        jobMatchService.matchSeekerLater(p.getId());
+        jobRecommendations.seekerChanged(p.getId());
+    }
+
+    private void changed(Person p) {
+        resumeCache.resumeChanged(p.getUsername());
+        cacheSync.personChanged(p.getId(), p.getUsername());
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.CacheStats;
+import com.nmerris.roboresumedb.Resume;
+import com.nmerris.roboresumedb.ResumeCounts;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.EducationRepo;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import com.nmerris.roboresumedb.repositories.WorkExperienceRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps a running count of each Person's educational achievements, work experiences and skills, so the navbar badges
+ * and the 'x of 10 entered' messages don't need to query the db on every page.  Each Person's counts are loaded from
+ * the db the first time they are needed, after that every route that adds or deletes a resume record updates them.
+ * Snapshots are immutable and replaced holding the map's lock, so each update is atomic.  Only the most recently used
+ * Persons' counts are kept (jobpro.resume-counters.max-entries), the rest are loaded again when next needed.
+ */
+@Service
+public class ResumeCounters {
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    EducationRepo educationRepo;
+
+    @Autowired
+    WorkExperienceRepo workExperienceRepo;
+
+    // person id -> counts, in least recently used order
+    private final Map<Long, ResumeCounts> countsByPersonId;
+
+    private static final int STRIPES = 256;
+
+    // one per stripe of usernames, goes up every time counts in the stripe change or are dropped, so counts loaded
+    // while one of them changed are not cached (same idea as JobRecommendations).  only written holding
+    // countsByPersonId's lock
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    private final CacheStats stats = new CacheStats();
+
+
+    public ResumeCounters(@Value("${jobpro.resume-counters.max-entries:10000}") int maxEntries) {
+        countsByPersonId = new LinkedHashMap<Long, ResumeCounts>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ResumeCounts> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+
+    // the queries run without holding the lock, so one Person's load doesn't hold up everyone else's badges
+    public ResumeCounts get(Person p) {
+        long version = version(p.getUsername());
+        synchronized (countsByPersonId) {
+            ResumeCounts counts = countsByPersonId.get(p.getId());
+            if(counts != null) {
+                stats.hit();
+                return counts;
+            }
+        }
+        stats.miss();
+        ResumeCounts counts = new ResumeCounts(
+                educationRepo.countAllByMyPersonIs(p),
+                workExperienceRepo.countAllByMyPersonIs(p),
+                personRepo.countSkillsById(p.getId()));
+        putIfUnchanged(p, version, counts);
+        return counts;
+    }
+
+    // call before loading a whole resume, and pass it to resumeLoaded
+    public long version(String username) {
+        return versions.get(stripe(username));
+    }
+
+    // call after loading a whole resume, if this Person's counts aren't loaded they are counted from the resume
+    // instead of with three more queries.  version is from before the resume was loaded, so a resume that was loaded
+    // before a record was added or deleted doesn't become the counts.  a resume read from a replica may be behind, it
+    // isn't used
+    public void resumeLoaded(Resume resume, long version) {
+        if(!resume.isFromPrimary()) {
+            return;
+        }
+        putIfUnchanged(resume.getPerson(), version, new ResumeCounts(
+                resume.getEducationAchievements().size(),
+                resume.getWorkExperiences().size(),
+                resume.getSkills().size()));
+    }
+
+    // call after saving a NEW ed achievement, updating an existing one does not change the count
+    public void edAchievementAdded(Person p) {
+        adjust(p, 1, 0, 0);
+    }
+
+    public void edAchievementRemoved(Person p) {
+        adjust(p, -1, 0, 0);
+    }
+
+    public void workExperienceAdded(Person p) {
+        adjust(p, 0, 1, 0);
+    }
+
+    public void workExperienceRemoved(Person p) {
+        adjust(p, 0, -1, 0);
+    }
+
+    public void skillAdded(Person p) {
+        adjust(p, 0, 0, 1);
+    }
+
+    public void skillRemoved(Person p) {
+        adjust(p, 0, 0, -1);
+    }
+
+    // call after /startover has wiped everything
+    public void reset(Person p) {
+        synchronized (countsByPersonId) {
+            versions.incrementAndGet(stripe(p.getUsername()));
+            countsByPersonId.put(p.getId(), new ResumeCounts(0, 0, 0));
+        }
+    }
+
+    // forget this Person's counts, they are loaded from the db again the next time they are needed
+    public void evict(Person p) {
+        synchronized (countsByPersonId) {
+            versions.incrementAndGet(stripe(p.getUsername()));
+            countsByPersonId.remove(p.getId());
+        }
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+
+    // if this Person's counts aren't loaded there is nothing to adjust, they will be loaded fresh from the db (which
+    // already includes this change) the next time they are needed.  counts being loaded right now may or may not
+    // include it, so the version goes up and they aren't cached
+    private void adjust(Person p, long edAchievements, long workExps, long skills) {
+        synchronized (countsByPersonId) {
+            versions.incrementAndGet(stripe(p.getUsername()));
+            ResumeCounts counts = countsByPersonId.get(p.getId());
+            if(counts != null) {
+                countsByPersonId.put(p.getId(), counts.plus(edAchievements, workExps, skills));
+            }
+        }
+    }
+
+    private void putIfUnchanged(Person p, long version, ResumeCounts counts) {
+        synchronized (countsByPersonId) {
+            if(version(p.getUsername()) == version) {
+                countsByPersonId.putIfAbsent(p.getId(), counts);
+            }
+        }
+    }
+
+    private static int stripe(String username) {
+        return Math.floorMod(username.hashCode(), STRIPES);
+    }
+
+}
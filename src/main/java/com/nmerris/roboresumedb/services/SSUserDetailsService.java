@@ -1,8 +1,8 @@
 package com.nmerris.roboresumedb.services;
 
-import com.nmerris.roboresumedb.models.Person;
-import com.nmerris.roboresumedb.models.Role;
 import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,41 +11,52 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import javax.transaction.Transactional;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Transactional // either do it all, or don't do any of it, prevents partial db persisting
 @Service
 public class SSUserDetailsService implements UserDetailsService {
 
+    private static final Logger log = LoggerFactory.getLogger(SSUserDetailsService.class);
+
     private PersonRepo personRepo;
 
-    public SSUserDetailsService(PersonRepo personRepo) {
+    // recently loaded logins, so most logins don't need the db at all
+    private UserDetailsCache userDetailsCache;
+
+    public SSUserDetailsService(PersonRepo personRepo, UserDetailsCache userDetailsCache) {
         this.personRepo = personRepo;
+        this.userDetailsCache = userDetailsCache;
     }
 
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
+        UserDetails cached = userDetailsCache.get(username);
+        if(cached != null) {
+            return cached;
+        }
+
         try {
-            Person user = personRepo.findByUsername(username);
-            if(user == null) {
+            // only the password and role names, never the whole Person
+            List<Object[]> login = personRepo.findLoginByUsername(username);
+            if(login.isEmpty()) {
                 // in real life, don't let anyone know that user was not found, just say something generic like "invalid login"
-                System.out.println("!!!!!!!!!!!!! user not found with username: " + user.getUsername());
-//                System.out.println("!!!!!!!!!!!!! user not found with username: " + user.toString());
+                log.debug("no user with username {}", username);
 
                 // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
                 // HERE is where you check if the user is 'enabled' or not, if user is not 'enabled', then return null
 
-                return null;
+                throw new UsernameNotFoundException("ThAt UsEr WaS nOt FoUnD (in SSUserDetailsService)");
             }
 
-            System.out.println("============= inside SSUserDetailsService.loadUserByUsername... found user with username: " + user.getUsername());
-//            System.out.println("============= found user with username: " + user.toString());
-
             // User here is NOT the same as our User entity
-            return new org.springframework.security.core.userdetails.User(user.getUsername(),
-                    user.getPassword(), getAuthorities(user));
+            UserDetails user = new org.springframework.security.core.userdetails.User(username,
+                    (String) login.get(0)[0], getAuthorities(login));
+            userDetailsCache.put(user);
+            return user;
         } catch (Exception e) {
             throw new UsernameNotFoundException("ThAt UsEr WaS nOt FoUnD (in SSUserDetailsService)");
         }
@@ -58,15 +69,17 @@ public class SSUserDetailsService implements UserDetailsService {
     // have Users with atached Roles that we previously entered (prob. via a web form).  We are just telling SS what
     // granted authorities user has, this is part of the magic that allows SecurityConfiguration to restrict or grant
     // access to various paths in our app
-    private Set<GrantedAuthority> getAuthorities(Person user) {
+    // login has one {password, role name} row per role, role name is null if the user has no roles at all
+    private Set<GrantedAuthority> getAuthorities(List<Object[]> login) {
         Set<GrantedAuthority> authorities = new HashSet<>();
 
-        for (Role role : user.getRoles()) {
-            GrantedAuthority grantedAuthority = new SimpleGrantedAuthority(role.getRole());
-            authorities.add(grantedAuthority);
+        for (Object[] row : login) {
+            if(row[1] != null) {
+                GrantedAuthority grantedAuthority = new SimpleGrantedAuthority((String) row[1]);
+                authorities.add(grantedAuthority);
+            }
         }
 
-        System.out.println("==================== inside SSUserDetailsService.loadUserByUsername... user authorities are: " + authorities.toString());
         return authorities;
     }
 
@@ -0,0 +1,400 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.KeysetCursor;
+import com.nmerris.roboresumedb.ResultPage;
+import com.nmerris.roboresumedb.models.EducationAchievement;
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.repositories.EducationRepo;
+import com.nmerris.roboresumedb.repositories.JobRepo;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * In memory full text index behind the /search route.  Person names, Job titles, employers and descriptions, and
+ * EducationAchievement schools are split into lower case, accent free tokens, and each token maps to the ids of the
+ * records that contain it.  Tokens are kept sorted, so every word typed into a search box matches as a prefix
+ * ('jav' finds 'Java' and 'JavaScript') with a range scan instead of a LIKE '%x%' table scan.
+ * Every word in the search string must match, results are ranked by how well they match and returned a page at a
+ * time, so only one page of records is ever loaded from the db.
+ * The index is built from the db the first time it is needed, after that the routes that save or delete People,
+ * Jobs and EducationAchievements keep it current, and CacheSync does the same for changes made on other nodes.
+ */
+@Service
+public class SearchIndex {
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    JobRepo jobRepo;
+
+    @Autowired
+    EducationRepo educationRepo;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private final FieldIndex personNames = new FieldIndex();
+    private final FieldIndex jobTitles = new FieldIndex();
+    private final FieldIndex jobEmployers = new FieldIndex();
+    private final FieldIndex jobDescriptions = new FieldIndex();
+    private final FieldIndex schools = new FieldIndex();
+
+    // which fields each type of search looks in, and how much a match in each field counts for
+    // a word in a job title counts for more than the same word in the description
+    private final Map<FieldIndex, Integer> peopleFields = Collections.singletonMap(personNames, 1);
+    private final Map<FieldIndex, Integer> jobFields = new LinkedHashMap<>();
+    private final Map<FieldIndex, Integer> companyFields = Collections.singletonMap(jobEmployers, 1);
+    private final Map<FieldIndex, Integer> schoolFields = Collections.singletonMap(schools, 1);
+
+    // person id -> ids of that Person's EducationAchievements, so /startover can remove them all at once
+    private final Map<Long, Set<Long>> educationIdsByPersonId = new ConcurrentHashMap<>();
+
+    // max number of results shown on one page
+    @Value("${jobpro.page-size:20}")
+    private int pageSize;
+
+    private volatile boolean loaded;
+
+
+    public SearchIndex() {
+        jobFields.put(jobTitles, 3);
+        jobFields.put(jobDescriptions, 1);
+    }
+
+
+    // search results, best match first, one page at a time ========================================================
+    // after/before are cursors from a previous page, if both are null the first page is returned
+    public ResultPage<Person> findPeople(String searchString, String after, String before) {
+        return page(score(searchString, peopleFields), after, before, personRepo::findAll, Person::getId);
+    }
+
+    public ResultPage<Job> findJobs(String searchString, String after, String before) {
+        return page(score(searchString, jobFields), after, before, jobRepo::findAll, Job::getId);
+    }
+
+    public ResultPage<Job> findCompanies(String searchString, String after, String before) {
+        return page(score(searchString, companyFields), after, before, jobRepo::findAll, Job::getId);
+    }
+
+    public ResultPage<EducationAchievement> findSchools(String searchString, String after, String before) {
+        // the results table shows each school's Person too, load them in the same query
+        return page(score(searchString, schoolFields), after, before, educationRepo::findAllWithPersonByIdIn,
+                EducationAchievement::getId);
+    }
+
+
+    // incremental updates, call these after the db has been changed ================================================
+    public synchronized void indexPerson(Person p) {
+        ensureLoaded();
+        personNames.put(p.getId(), p.getNameFirst(), p.getNameLast());
+    }
+
+    public synchronized void indexJob(Job job) {
+        ensureLoaded();
+        jobTitles.put(job.getId(), job.getTitle());
+        jobEmployers.put(job.getId(), job.getEmployer());
+        jobDescriptions.put(job.getId(), job.getDescription());
+    }
+
+    public synchronized void removeJob(long jobId) {
+        ensureLoaded();
+        jobTitles.remove(jobId);
+        jobEmployers.remove(jobId);
+        jobDescriptions.remove(jobId);
+    }
+
+    public synchronized void indexEducation(EducationAchievement ea) {
+        ensureLoaded();
+        schools.put(ea.getId(), ea.getSchool());
+        educationIdsByPersonId.computeIfAbsent(ea.getMyPerson().getId(), id -> ConcurrentHashMap.newKeySet())
+                .add(ea.getId());
+    }
+
+    // p is the EducationAchievement's owner
+    public synchronized void removeEducation(Person p, long educationId) {
+        ensureLoaded();
+        schools.remove(educationId);
+        Set<Long> ids = educationIdsByPersonId.get(p.getId());
+        if(ids != null) {
+            ids.remove(educationId);
+        }
+    }
+
+    // replaces everything indexed for a Person's EducationAchievements with these, ie after another node changed them
+    // the new ones go in before the ones that are gone come out, so a school that's still there never drops out
+    public synchronized void reindexEducationsOf(Person p, Iterable<EducationAchievement> educations) {
+        ensureLoaded();
+        Set<Long> ids = educationIdsByPersonId.computeIfAbsent(p.getId(), id -> ConcurrentHashMap.newKeySet());
+        Set<Long> current = new HashSet<>();
+        for (EducationAchievement ea : educations) {
+            schools.put(ea.getId(), ea.getSchool());
+            ids.add(ea.getId());
+            current.add(ea.getId());
+        }
+        for (Iterator<Long> i = ids.iterator(); i.hasNext(); ) {
+            Long id = i.next();
+            if(!current.contains(id)) {
+                schools.remove(id);
+                i.remove();
+            }
+        }
+    }
+
+    // call after /startover has deleted all of a Person's EducationAchievements
+    public synchronized void removeEducationsOf(Person p) {
+        ensureLoaded();
+        Set<Long> ids = educationIdsByPersonId.remove(p.getId());
+        if(ids != null) {
+            for (Long id : ids) {
+                schools.remove(id);
+            }
+        }
+    }
+
+
+    // returns record id -> score for every record that matches every word in the search string
+    private Map<Long, Integer> score(String searchString, Map<FieldIndex, Integer> weightedFields) {
+        ensureLoaded();
+
+        // a record must match every word in the search string, its score is the sum of its score for each word
+        Map<Long, Integer> scores = null;
+        for (String term : new LinkedHashSet<>(tokenize(searchString))) {
+            Map<Long, Integer> termScores = new HashMap<>();
+            for (Map.Entry<FieldIndex, Integer> field : weightedFields.entrySet()) {
+                field.getKey().match(term, field.getValue(), termScores);
+            }
+
+            if(scores == null) {
+                scores = termScores;
+            }
+            else {
+                Map<Long, Integer> both = new HashMap<>();
+                for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                    Integer termScore = termScores.get(entry.getKey());
+                    if(termScore != null) {
+                        both.put(entry.getKey(), entry.getValue() + termScore);
+                    }
+                }
+                scores = both;
+            }
+
+            if(scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores == null ? Collections.emptyMap() : scores;
+    }
+
+    /**
+     * Picks out one page of hits, seeking from the (score, id) cursor instead of sorting every hit: a bounded heap
+     * keeps only the pageSize + 1 hits closest to the cursor, then only those records are loaded from the db.
+     */
+    private <T> ResultPage<T> page(Map<Long, Integer> scores, String after, String before,
+                                   Function<List<Long>, Iterable<T>> loader, Function<T, Long> idOf) {
+        Hit afterHit = Hit.decode(after);
+        Hit beforeHit = afterHit == null ? Hit.decode(before) : null;
+        boolean backwards = beforeHit != null;
+        Hit cursor = backwards ? beforeHit : afterHit;
+
+        // the head of the heap is the hit furthest from the cursor, which is the one to drop when the heap is full
+        PriorityQueue<Hit> heap = new PriorityQueue<>(pageSize + 2, backwards ? Hit.RANK : Hit.RANK.reversed());
+        for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+            Hit hit = new Hit(entry.getKey(), entry.getValue());
+            if(cursor != null) {
+                int compared = Hit.RANK.compare(hit, cursor);
+                if(backwards ? compared >= 0 : compared <= 0) {
+                    continue;
+                }
+            }
+            heap.offer(hit);
+            if(heap.size() > pageSize + 1) {
+                heap.poll();
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(Hit.RANK);
+        ResultPage<Hit> hitPage = ResultPage.of(hits, pageSize, backwards, cursor != null, Hit::encode);
+
+        // load the page of records in one query and put them back in ranked order
+        List<T> results = new ArrayList<>();
+        if(hitPage.getItems().isEmpty()) {
+            return hitPage.withItems(results);
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Hit hit : hitPage.getItems()) {
+            ids.add(hit.id);
+        }
+        // from the primary, same as the index: right after a change (ie one CacheSync just indexed) a replica that's
+        // behind would be missing the new records or still have the old fields, and the page wouldn't match the hits
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.setName(SearchIndex.class.getName() + ".page");
+        Map<Long, T> byId = new HashMap<>();
+        for (T item : ReplicaRouter.onPrimary(() -> readOnly.execute(status -> loader.apply(ids)))) {
+            byId.put(idOf.apply(item), item);
+        }
+        for (Long id : ids) {
+            // may have been deleted since it was indexed
+            if(byId.containsKey(id)) {
+                results.add(byId.get(id));
+            }
+        }
+        return hitPage.withItems(results);
+    }
+
+    // lower case, strip accents, split on anything that isn't a letter or digit
+    static List<String> tokenize(String... texts) {
+        List<String> tokens = new ArrayList<>();
+        for (String text : texts) {
+            if(text == null) {
+                continue;
+            }
+            String folded = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                    .toLowerCase(Locale.ROOT);
+            for (String token : NON_WORD.split(folded)) {
+                if(!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    // writers are synchronized, so updates made before the first load wait for the load to finish
+    private void ensureLoaded() {
+        if(loaded) {
+            return;
+        }
+        synchronized (this) {
+            if(!loaded) {
+                for (Object[] row : personRepo.findAllNames()) {
+                    personNames.put((Long) row[0], (String) row[1], (String) row[2]);
+                }
+                for (Object[] row : jobRepo.findAllSearchFields()) {
+                    jobTitles.put((Long) row[0], (String) row[1]);
+                    jobEmployers.put((Long) row[0], (String) row[2]);
+                    jobDescriptions.put((Long) row[0], (String) row[3]);
+                }
+                for (Object[] row : educationRepo.findAllSchools()) {
+                    schools.put((Long) row[0], (String) row[1]);
+                    educationIdsByPersonId.computeIfAbsent((Long) row[2], id -> ConcurrentHashMap.newKeySet())
+                            .add((Long) row[0]);
+                }
+                loaded = true;
+            }
+        }
+    }
+
+
+    // a record id and its score, ranked highest score first, ties broken by id so the order is stable
+    private static class Hit {
+
+        static final Comparator<Hit> RANK = Comparator.comparingInt((Hit h) -> -h.score).thenComparingLong(h -> h.id);
+
+        final long id;
+        final int score;
+
+        Hit(long id, int score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        String encode() {
+            return new KeysetCursor(Integer.toString(score), id).encode();
+        }
+
+        static Hit decode(String cursor) {
+            KeysetCursor decoded = KeysetCursor.decode(cursor);
+            if(decoded == null) {
+                return null;
+            }
+            try {
+                return new Hit(decoded.getId(), Integer.parseInt(decoded.getSortKey()));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+
+    /**
+     * Inverted index for a single field, token -> (record id -> number of times the token appears in that record).
+     * Tokens are sorted so that all the tokens starting with a prefix are one contiguous range.
+     * Writers are synchronized on the SearchIndex, searches don't lock at all, so a search that runs while a record
+     * is being re-indexed can see it with some of its old tokens and some of its new ones.  It never sees the record
+     * with neither: new tokens are added before the ones that are gone are removed.
+     */
+    private static class FieldIndex {
+
+        private final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+
+        // record id -> its distinct tokens, needed to remove or re-index a record
+        private final Map<Long, Set<String>> tokensById = new ConcurrentHashMap<>();
+
+        void put(long id, String... texts) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (String token : tokenize(texts)) {
+                counts.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                postings.computeIfAbsent(count.getKey(), t -> new ConcurrentHashMap<>()).put(id, count.getValue());
+            }
+            Set<String> old = tokensById.put(id, counts.keySet());
+            if(old != null) {
+                for (String token : old) {
+                    if(!counts.containsKey(token)) {
+                        unpost(token, id);
+                    }
+                }
+            }
+        }
+
+        void remove(long id) {
+            Set<String> tokens = tokensById.remove(id);
+            if(tokens != null) {
+                for (String token : tokens) {
+                    unpost(token, id);
+                }
+            }
+        }
+
+        private void unpost(String token, long id) {
+            Map<Long, Integer> ids = postings.get(token);
+            if(ids != null) {
+                ids.remove(id);
+                if(ids.isEmpty()) {
+                    postings.remove(token, ids);
+                }
+            }
+        }
+
+        // a whole word match scores twice as much as a prefix match
+        void match(String term, int weight, Map<Long, Integer> scores) {
+            for (Map.Entry<String, Map<Long, Integer>> posting :
+                    postings.subMap(term, true, term + Character.MAX_VALUE, true).entrySet()) {
+                int tokenWeight = posting.getKey().equals(term) ? 2 * weight : weight;
+                for (Map.Entry<Long, Integer> hit : posting.getValue().entrySet()) {
+                    scores.merge(hit.getKey(), tokenWeight * hit.getValue(), Integer::sum);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.models.Skill;
+import com.nmerris.roboresumedb.repositories.SkillRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The list of Skills users and recruiters can pick from is small reference data that almost never changes, so it is
+ * loaded once into an immutable, versioned Snapshot instead of being queried on every form.  When the skill table
+ * does change, refresh() builds a new Snapshot and swaps it in atomically, so readers always see a complete catalog.
+ * The catalog also refreshes itself every few minutes to pick up skills added directly to the db.
+ */
+@Service
+public class SkillCatalog {
+
+    @Autowired
+    SkillRepo skillRepo;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+
+    public Snapshot get() {
+        Snapshot snapshot = current.get();
+        if(snapshot == null) {
+            snapshot = refresh();
+        }
+        return snapshot;
+    }
+
+    // picks up skills that were added or changed directly in the db
+    @Scheduled(fixedDelayString = "${jobpro.skills.refresh-ms:300000}", initialDelayString = "${jobpro.skills.refresh-ms:300000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    // reloads the catalog, the version only goes up if the skills actually changed
+    public synchronized Snapshot refresh() {
+        Snapshot old = current.get();
+        Snapshot loaded = new Snapshot(old == null ? 1 : old.version + 1, skillRepo.findAllIdNameRating());
+        if(old != null && old.skillsById.equals(loaded.skillsById)) {
+            return old;
+        }
+        current.set(loaded);
+        return loaded;
+    }
+
+
+    /**
+     * One immutable version of the skill catalog.  Skills handed out are new detached copies holding only id, name
+     * and rating, they are fine to attach to a Job or Person and save, but their jobs/persons collections are empty.
+     */
+    public static final class Snapshot {
+
+        private final long version;
+
+        // distinct skill names, sorted ignoring case
+        private final List<String> names;
+
+        // name + rating -> id
+        private final Map<String, Long> idsByNameAndRating;
+
+        // id -> {name, rating}
+        private final Map<Long, List<String>> skillsById;
+
+        private Snapshot(long version, List<Object[]> rows) {
+            this.version = version;
+            Set<String> sortedNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder()));
+            Map<String, Long> ids = new HashMap<>();
+            Map<Long, List<String>> skills = new HashMap<>();
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                String name = (String) row[1];
+                String rating = (String) row[2];
+                sortedNames.add(name);
+                ids.put(key(name, rating), id);
+                skills.put(id, Collections.unmodifiableList(Arrays.asList(name, rating)));
+            }
+            this.names = Collections.unmodifiableList(new ArrayList<>(sortedNames));
+            this.idsByNameAndRating = Collections.unmodifiableMap(ids);
+            this.skillsById = Collections.unmodifiableMap(skills);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<String> getNames() {
+            return names;
+        }
+
+        // returns null if there is no such skill
+        public Skill find(String name, String rating) {
+            Long id = idsByNameAndRating.get(key(name, rating));
+            return id == null ? null : findById(id);
+        }
+
+        // returns null if there is no such skill, same as skillRepo.findOne
+        public Skill findById(long id) {
+            List<String> nameAndRating = skillsById.get(id);
+            if(nameAndRating == null) {
+                return null;
+            }
+            Skill skill = new Skill();
+            skill.setId(id);
+            skill.setSkill(nameAndRating.get(0));
+            skill.setRating(nameAndRating.get(1));
+            return skill;
+        }
+
+        public List<Skill> findAll() {
+            List<Skill> skills = new ArrayList<>();
+            for (Long id : skillsById.keySet()) {
+                skills.add(findById(id));
+            }
+            return skills;
+        }
+
+        private static String key(String name, String rating) {
+            return name + '\u0000' + rating;
+        }
+    }
+
+}
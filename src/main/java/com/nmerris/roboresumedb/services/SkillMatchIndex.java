@@ -0,0 +1,559 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.SkillMatch;
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.models.Skill;
+import com.nmerris.roboresumedb.repositories.JobRepo;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory matching engine for job seekers and jobs.  Skill names are interned to small dense ints, and every seeker
+ * and every job is one row of bitsets, one bitset per rating, with a bit set for each skill name they have at that
+ * rating.  A seeker meets a job's skill if they have the name at the posted rating or better, so scoring a seeker
+ * against a job is just a few word sized ANDs and bit counts, and big tables are scanned in parallel segments on the
+ * fork join pool.
+ * The index is built from the db the first time it is needed, after that the /addskill, /delete?type=skill and
+ * /startover routes keep the seekers current, and JobMatchService and JobService keep the jobs current.  CacheSync
+ * reloads seekers and jobs that other nodes changed.
+ */
+@Service
+public class SkillMatchIndex {
+
+    // lowest to highest, a seeker with a higher rating meets a job asking for a lower one
+    // anything not in here (there shouldn't be anything) counts as the lowest rating
+    private static final List<String> RATINGS = Arrays.asList("Familiar", "Proficient", "Expert");
+
+    private static final int LEVELS = RATINGS.size();
+
+    // rows per fork join segment, below this a table is scanned on the calling thread
+    private static final int SEGMENT_ROWS = 8192;
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    JobRepo jobRepo;
+
+    // how many seekers to show on the job post confirmation page
+    @Value("${jobpro.match.top-k:50}")
+    private int defaultTopK;
+
+    // guards everything below, matching only reads so any number of matches can run at once
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // skill name -> dense id, the bit number of that name in every bitset
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    // longs per bitset, enough for every interned name
+    private int words = 1;
+
+    // a tie goes to the lower row, rows are added in the order seekers are first seen (id order when loaded from the db)
+    private final BitsetTable seekers = new BitsetTable();
+
+    private final BitsetTable jobs = new BitsetTable();
+
+    // goes up every time a job is put or removed, so anything built from jobScores can tell when it's out of date
+    private volatile long jobsVersion;
+
+    private volatile boolean loaded;
+
+
+    public List<SkillMatch> topMatches(Job job) {
+        return topMatches(job, defaultTopK);
+    }
+
+    /**
+     * Seekers who meet at least one of the job's skills, best matches first.  Seekers are ranked by how many of the
+     * job's skills they have at the posted rating or better, then by how many of the job's skills they have at any
+     * rating.  Only the top k Persons are loaded from the db, in a single query.
+     * @return at most k matches, in ranked order
+     */
+    public List<SkillMatch> topMatches(Job job, int k) {
+        ensureLoaded();
+        long[] keys;
+        long[] seekerIds;
+        lock.readLock().lock();
+        try {
+            keys = seekers.scan(jobMask(job), false, k);
+            seekerIds = seekers.ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if(keys.length == 0) {
+            return new ArrayList<>();
+        }
+        sortBestFirst(keys);
+
+        List<Long> ids = new ArrayList<>();
+        for (long key : keys) {
+            ids.add(seekerIds[row(key)]);
+        }
+        Map<Long, Person> personsById = new HashMap<>();
+        for (Person person : personRepo.findAll(ids)) {
+            personsById.put(person.getId(), person);
+        }
+
+        List<SkillMatch> matches = new ArrayList<>();
+        for (long key : keys) {
+            Person person = personsById.get(seekerIds[row(key)]);
+            // seeker may have been deleted since the index was updated
+            if(person != null) {
+                matches.add(new SkillMatch(person, ratingMatches(key), nameMatches(key)));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Every seeker who meets at least one of the job's skills, unranked.
+     * @return seeker id -> {rating matches, name matches}
+     */
+    Map<Long, int[]> scores(Job job) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return toScores(seekers.scan(jobMask(job), false, Integer.MAX_VALUE), seekers.ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Every indexed job the seeker meets at least one skill of, scored the same way as scores(Job).
+     * @return job id -> {rating matches, name matches}
+     */
+    Map<Long, int[]> jobScores(long seekerId) {
+        return jobScores(seekerId, Integer.MAX_VALUE);
+    }
+
+    // same as jobScores(seekerId), but only the seeker's k best jobs
+    Map<Long, int[]> jobScores(long seekerId, int k) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Integer row = seekers.rowsById.get(seekerId);
+            if(row == null) {
+                return new HashMap<>();
+            }
+            long[] seeker = Arrays.copyOfRange(seekers.bits, row * seekers.stride, (row + 1) * seekers.stride);
+            return toScores(jobs.scan(seeker, true, k), jobs.ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public long getJobsVersion() {
+        return jobsVersion;
+    }
+
+
+    // call after a seeker adds a skill to their resume
+    public void addSeekerSkill(Person seeker, Skill skill) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            setBit(seekers, seekers.row(seeker.getId()), skill.getSkill(), skill.getRating(), true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // call after a seeker deletes a skill from their resume
+    public void removeSeekerSkill(Person seeker, Skill skill) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            Integer row = seekers.rowsById.get(seeker.getId());
+            if(row != null) {
+                setBit(seekers, row, skill.getSkill(), skill.getRating(), false);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // call after a seeker wipes all their skills
+    public void removeSeeker(Person seeker) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            seekers.clear(seeker.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // call with a seeker and all of their skills, replaces whatever was indexed for them before
+    public void putSeeker(Person seeker, Collection<Skill> skills) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            seekers.clear(seeker.getId());
+            int row = seekers.row(seeker.getId());
+            for (Skill skill : skills) {
+                setBit(seekers, row, skill.getSkill(), skill.getRating(), true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // call with a job (and its skills) every time it's saved, replaces whatever was indexed for it before
+    public void putJob(Job job) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            jobs.clear(job.getId());
+            int row = jobs.row(job.getId());
+            for (Skill skill : job.getSkills()) {
+                setBit(jobs, row, skill.getSkill(), skill.getRating(), true);
+            }
+            jobsVersion++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // call after jobs are deleted
+    public void removeJobs(Collection<Long> jobIds) {
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            for (Long id : jobIds) {
+                jobs.clear(id);
+            }
+            jobsVersion++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // the job's skills in the same layout as a table row, names nobody has been indexed with can't match, so they're
+    // left out rather than interned.  only call holding the lock
+    private long[] jobMask(Job job) {
+        long[] mask = new long[LEVELS * words];
+        for (Skill skill : job.getSkills()) {
+            Integer nameId = nameIds.get(skill.getSkill());
+            if(nameId != null) {
+                mask[level(skill.getRating()) * words + (nameId >>> 6)] |= 1L << nameId;
+            }
+        }
+        return mask;
+    }
+
+    // only call holding the write lock
+    private void setBit(BitsetTable table, int row, String name, String rating, boolean on) {
+        int nameId = nameIds.computeIfAbsent(name, n -> nameIds.size());
+        if(nameId >= words * 64) {
+            int newWords = words * 2;
+            seekers.widen(words, newWords);
+            jobs.widen(words, newWords);
+            words = newWords;
+        }
+        int i = row * table.stride + level(rating) * words + (nameId >>> 6);
+        if(on) {
+            table.bits[i] |= 1L << nameId;
+        }
+        else {
+            table.bits[i] &= ~(1L << nameId);
+        }
+    }
+
+    private static int level(String rating) {
+        return Math.max(0, RATINGS.indexOf(rating));
+    }
+
+    // updates made before the first load are not lost, because every update waits here for the load to finish first
+    private void ensureLoaded() {
+        if(loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if(!loaded) {
+                for (Object[] row : personRepo.findAllSeekerSkills()) {
+                    setBit(seekers, seekers.row((Long) row[0]), (String) row[1], (String) row[2], true);
+                }
+                for (Object[] row : jobRepo.findAllJobSkills()) {
+                    setBit(jobs, jobs.row((Long) row[0]), (String) row[1], (String) row[2], true);
+                }
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // a match packed into one long, so sorting and heaps work on primitives and a bigger key is a better match:
+    // rating matches in the top 16 bits, name matches in the next 16, the row complemented in the low 32
+    private static long key(int ratingMatches, int nameMatches, int row) {
+        return ((long) ratingMatches << 48) | ((long) nameMatches << 32) | (~row & 0xFFFFFFFFL);
+    }
+
+    private static int ratingMatches(long key) {
+        return (int) (key >>> 48);
+    }
+
+    private static int nameMatches(long key) {
+        return (int) (key >>> 32) & 0xFFFF;
+    }
+
+    private static int row(long key) {
+        return ~(int) key;
+    }
+
+    private static void sortBestFirst(long[] keys) {
+        Arrays.sort(keys);
+        for (int i = 0, j = keys.length - 1; i < j; i++, j--) {
+            long swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+    }
+
+    private static Map<Long, int[]> toScores(long[] keys, long[] ids) {
+        Map<Long, int[]> scores = new HashMap<>(keys.length * 2);
+        for (long key : keys) {
+            scores.put(ids[row(key)], new int[] {ratingMatches(key), nameMatches(key)});
+        }
+        return scores;
+    }
+
+
+    /**
+     * Fixed width rows of bitsets, row r is bits[r * stride, (r + 1) * stride), one bitset of `words` longs per rating.
+     * Rows are never removed, a cleared row just never matches anything.
+     */
+    private static final class BitsetTable {
+
+        private long[] ids = new long[1024];
+        private long[] bits = new long[1024 * LEVELS];
+        private int stride = LEVELS;
+        private int size;
+        private final Map<Long, Integer> rowsById = new HashMap<>();
+
+        // the row for this id, added at the end if it's new
+        int row(long id) {
+            Integer row = rowsById.get(id);
+            if(row != null) {
+                return row;
+            }
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                bits = Arrays.copyOf(bits, size * 2 * stride);
+            }
+            ids[size] = id;
+            rowsById.put(id, size);
+            return size++;
+        }
+
+        void clear(long id) {
+            Integer row = rowsById.get(id);
+            if(row != null) {
+                Arrays.fill(bits, row * stride, (row + 1) * stride, 0L);
+            }
+        }
+
+        // makes room for more names, each rating's bitset goes from oldWords to newWords longs
+        void widen(int oldWords, int newWords) {
+            long[] widened = new long[ids.length * LEVELS * newWords];
+            for (int row = 0; row < size; row++) {
+                for (int level = 0; level < LEVELS; level++) {
+                    System.arraycopy(bits, row * stride + level * oldWords,
+                            widened, row * LEVELS * newWords + level * newWords, oldWords);
+                }
+            }
+            bits = widened;
+            stride = LEVELS * newWords;
+        }
+
+        /**
+         * Scores every row against probe, which has the same layout as a row.  If probeIsSeeker the rows are jobs,
+         * otherwise the rows are seekers and the probe is a job.
+         * @return keys of the rows that meet at least one skill, at most k of them (the best k), in no order
+         */
+        long[] scan(long[] probe, boolean probeIsSeeker, int k) {
+            return ForkJoinPool.commonPool().invoke(new Scan(bits, stride, probe, probeIsSeeker, k, 0, size));
+        }
+    }
+
+    private static final class Scan extends RecursiveTask<long[]> {
+
+        private final long[] bits;
+        private final int stride;
+        private final long[] probe;
+        private final boolean probeIsSeeker;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        private Scan(long[] bits, int stride, long[] probe, boolean probeIsSeeker, int k, int from, int to) {
+            this.bits = bits;
+            this.stride = stride;
+            this.probe = probe;
+            this.probeIsSeeker = probeIsSeeker;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if(to - from > SEGMENT_ROWS) {
+                int middle = (from + to) >>> 1;
+                Scan right = new Scan(bits, stride, probe, probeIsSeeker, k, middle, to);
+                right.fork();
+                long[] left = new Scan(bits, stride, probe, probeIsSeeker, k, from, middle).compute();
+                return merge(left, right.join());
+            }
+
+            int words = stride / LEVELS;
+            long[] held = new long[stride];
+            long[] wanted = new long[stride];
+            if(probeIsSeeker) {
+                atLeast(probe, 0, held, words);
+            }
+            else {
+                System.arraycopy(probe, 0, wanted, 0, stride);
+            }
+
+            TopKeys best = new TopKeys(k);
+            for (int row = from; row < to; row++) {
+                int offset = row * stride;
+                if(probeIsSeeker) {
+                    System.arraycopy(bits, offset, wanted, 0, stride);
+                }
+                else {
+                    atLeast(bits, offset, held, words);
+                }
+
+                // a job can list the same name at more than one rating, each of those is a skill to meet, but the
+                // name only counts once towards the names the seeker has
+                int ratingMatches = 0;
+                int nameMatches = 0;
+                for (int w = 0; w < words; w++) {
+                    long wantedNames = 0;
+                    for (int level = 0; level < LEVELS; level++) {
+                        long want = wanted[level * words + w];
+                        ratingMatches += Long.bitCount(held[level * words + w] & want);
+                        wantedNames |= want;
+                    }
+                    nameMatches += Long.bitCount(held[w] & wantedNames);
+                }
+                if(ratingMatches > 0) {
+                    best.offer(key(ratingMatches, nameMatches, row));
+                }
+            }
+            return best.toArray();
+        }
+
+        // seeker bits at exactly each rating -> bits at that rating or better, level 0 ends up as 'any rating'
+        private static void atLeast(long[] from, int offset, long[] to, int words) {
+            for (int w = 0; w < words; w++) {
+                long or = 0;
+                for (int level = LEVELS - 1; level >= 0; level--) {
+                    or |= from[offset + level * words + w];
+                    to[level * words + w] = or;
+                }
+            }
+        }
+
+        private long[] merge(long[] left, long[] right) {
+            TopKeys best = new TopKeys(k);
+            for (long key : left) {
+                best.offer(key);
+            }
+            for (long key : right) {
+                best.offer(key);
+            }
+            return best.toArray();
+        }
+    }
+
+    // the k biggest keys offered, a min heap of primitives so the worst of the current top k is always at the head
+    // with k = Integer.MAX_VALUE it just collects everything
+    private static final class TopKeys {
+
+        private final int k;
+        private long[] heap = new long[16];
+        private int size;
+
+        private TopKeys(int k) {
+            this.k = k;
+        }
+
+        void offer(long key) {
+            if(k == Integer.MAX_VALUE) {
+                add(key);
+            }
+            else if(size < k) {
+                add(key);
+                siftUp(size - 1);
+            }
+            else if(k > 0 && key > heap[0]) {
+                heap[0] = key;
+                siftDown(0);
+            }
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(heap, size);
+        }
+
+        private void add(long key) {
+            if(size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            heap[size++] = key;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if(heap[parent] <= heap[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if(left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if(right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if(smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            long swap = heap[i];
+            heap[i] = heap[j];
+            heap[j] = swap;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently loaded login details, so a burst of logins (or a user logging in again) doesn't query the db every time.
+ * Entries expire after a fixed time and the cache has a max size, least recently used entries are dropped first.
+ * Anything that changes a Person's login details must call evict.
+ * Spring Security erases the password from the UserDetails it's given once the login is done, so get always hands
+ * out a new copy, never the cached one.
+ */
+@Service
+public class UserDetailsCache {
+
+    private final long ttlMillis;
+
+    // username -> details, in least recently used order
+    private final Map<String, CachedUser> usersByUsername;
+
+    private final CacheStats stats = new CacheStats();
+
+
+    public UserDetailsCache(@Value("${jobpro.user-cache.ttl-ms:300000}") long ttlMillis,
+                            @Value("${jobpro.user-cache.max-entries:10000}") int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        usersByUsername = Collections.synchronizedMap(new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+
+    // a copy of the cached details, or null if there are none or they have expired
+    public UserDetails get(String username) {
+        CachedUser cached = usersByUsername.get(username);
+        if(cached == null) {
+            stats.miss();
+            return null;
+        }
+        if(System.currentTimeMillis() > cached.expiresAt) {
+            usersByUsername.remove(username, cached);
+            stats.miss();
+            return null;
+        }
+        stats.hit();
+        return copy(cached.user);
+    }
+
+    public void put(UserDetails user) {
+        usersByUsername.put(user.getUsername(), new CachedUser(copy(user), System.currentTimeMillis() + ttlMillis));
+    }
+
+    // call after a Person's username, password, roles or enabled flag may have changed
+    public void evict(String username) {
+        usersByUsername.remove(username);
+    }
+
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+
+    private static UserDetails copy(UserDetails user) {
+        return new User(user.getUsername(), user.getPassword(), user.isEnabled(), user.isAccountNonExpired(),
+                user.isCredentialsNonExpired(), user.isAccountNonLocked(), user.getAuthorities());
+    }
+
+
+    private static final class CachedUser {
+
+        private final UserDetails user;
+        private final long expiresAt;
+
+        private CachedUser(UserDetails user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
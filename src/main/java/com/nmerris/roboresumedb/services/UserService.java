@@ -1,20 +1,46 @@
 package com.nmerris.roboresumedb.services;
 
+import com.nmerris.roboresumedb.Resume;
+import com.nmerris.roboresumedb.models.EducationAchievement;
 import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.models.Role;
+import com.nmerris.roboresumedb.models.WorkExperience;
+import com.nmerris.roboresumedb.repositories.EducationRepo;
 import com.nmerris.roboresumedb.repositories.PersonRepo;
 import com.nmerris.roboresumedb.repositories.RoleRepo;
+import com.nmerris.roboresumedb.repositories.WorkExperienceRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
     @Autowired
     PersonRepo personRepo;
 
     @Autowired
     RoleRepo roleRepo;
 
+    @Autowired
+    EducationRepo educationRepo;
+
+    @Autowired
+    WorkExperienceRepo workExperienceRepo;
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    CacheSync cacheSync;
+
     @Autowired
     public UserService(PersonRepo personRepo) {
         this.personRepo = personRepo;
@@ -25,6 +51,54 @@ public class UserService {
         return personRepo.findByUsername(username);
     }
 
+    /**
+     * A job seeker's whole resume: the Person with roles and skills, then their educations and work experiences,
+     * three queries on one connection.  Nothing is lazy loaded after this returns, so the page can be rendered after
+     * the connection has gone back to the pool (open session in view is off).
+     */
+    @Transactional(readOnly = true)
+    public Resume findResume(String username) {
+        // the connection is only taken when the first query runs, see ReplicaRouter
+        long replicaReads = ReplicaRouter.replicaReadsOnThread();
+        Person p = personRepo.findResumeByUsername(username);
+        List<EducationAchievement> eds = new ArrayList<>();
+        educationRepo.findAllByMyPersonIs(p).forEach(eds::add);
+        List<WorkExperience> workExps = new ArrayList<>();
+        workExperienceRepo.findAllByMyPersonIs(p).forEach(workExps::add);
+        return new Resume(p, eds, workExps, ReplicaRouter.replicaReadsOnThread() == replicaReads);
+    }
+
+    // one of p's educations, for the edit form, null if it doesn't exist or isn't p's
+    public EducationAchievement findEducation(Person p, long id) {
+        EducationAchievement ea = educationRepo.findByIdAndMyPerson(id, p);
+        if(ea != null) {
+            // the form needs myPerson.id, and the lazy Person that came with it can't be loaded once this returns
+            ea.setMyPerson(p);
+        }
+        return ea;
+    }
+
+    // same as findEducation
+    public WorkExperience findWorkExperience(Person p, long id) {
+        WorkExperience we = workExperienceRepo.findByIdAndMyPerson(id, p);
+        if(we != null) {
+            we.setMyPerson(p);
+        }
+        return we;
+    }
+
+    // one statement, nothing is loaded first, returns false if it doesn't exist (ie already deleted) or isn't p's
+    @Transactional
+    public boolean deleteEducation(Person p, long id) {
+        return educationRepo.deleteByIdAndPerson(id, p) > 0;
+    }
+
+    // same as deleteEducation
+    @Transactional
+    public boolean deleteWorkExperience(Person p, long id) {
+        return workExperienceRepo.deleteByIdAndPerson(id, p) > 0;
+    }
+
     public Long countByEmail(String email) {
         return personRepo.countByEmail(email);
     }
@@ -35,38 +109,50 @@ public class UserService {
 
     // returns 0 if any problems (ie if username already taken), 1 if ok
     public int saveUser(Person user) {
-        System.out.println("============================= UserService.saveUser, just got user.username: " + user.getUsername());
-
         if(personRepo.countByUsername(user.getUsername()) > 0) {
             // username already exists, display an appropriate error message
             return 0;
         }
-        user.addRole(roleRepo.findByRole("ROLE_USER"));
-        // overrode toString in Role, so should print out role string here
-        System.out.println("=================== adding role to user: " + roleRepo.findByRole("ROLE_USER"));
+        Role role = roleRepo.findByRole("ROLE_USER");
+        user.addRole(role);
         user.setEnabled(true);
         personRepo.save(user);
-        System.out.println("=================== just saved user to repo");
+        searchIndex.indexPerson(user);
+        cacheSync.personChanged(user.getId(), user.getUsername());
+        log.debug("registered {} as {}", user.getUsername(), role.getRole());
         return 1;
     }
 
     // returns 0 if any problems (ie if username already taken), 1 if ok
     public int saveRecruiter(Person user) {
-        System.out.println("============================= UserService.saveRecruiter, just got user.username: " + user.getUsername());
-
         if(personRepo.countByUsername(user.getUsername()) > 0) {
             // username already exists, display an appropriate error message
             return 0;
         }
 
 
-        user.addRole(roleRepo.findByRole("ROLE_RECRUITER"));
-        // overrode toString in Role, so should print out role string here
-        System.out.println("=================== adding role to user: " + roleRepo.findByRole("ROLE_RECRUITER"));
+        Role role = roleRepo.findByRole("ROLE_RECRUITER");
+        user.addRole(role);
         user.setEnabled(true);
         personRepo.save(user);
-        System.out.println("=================== just saved user to repo");
+        searchIndex.indexPerson(user);
+        cacheSync.personChanged(user.getId(), user.getUsername());
+        log.debug("registered {} as {}", user.getUsername(), role.getRole());
         return 1;
     }
 
+
+    /**
+     * Wipes all of a job seeker's educations, work experiences, and skills in one transaction, with three bulk
+     * statements no matter how much they had, nothing is loaded first.  The Person itself is kept.
+     * Everything loaded in this request is stale afterwards, and the caller must reset the caches and counters for
+     * this Person once this returns (ie after the commit).
+     */
+    @Transactional
+    public void startOver(Person p) {
+        educationRepo.deleteAllByPerson(p);
+        workExperienceRepo.deleteAllByPerson(p);
+        personRepo.unlinkAllSkills(p.getId());
+    }
+
 }
@@ -0,0 +1,16 @@
+-- the saved job matches (see JobMatchService), which came after the schema V1 was taken from.  1.1 so it also runs on
+-- a db that was baselined at V1, before V2 and V3 which use the job_match table
+
+alter table job add column matched_at timestamp;
+
+create table job_match (
+    id int8 not null,
+    name_matches int4 not null,
+    rating_matches int4 not null,
+    job_id int8,
+    person_id int8,
+    primary key (id)
+);
+
+alter table job_match add constraint fk_job_match_job foreign key (job_id) references job;
+alter table job_match add constraint fk_job_match_person foreign key (person_id) references person;
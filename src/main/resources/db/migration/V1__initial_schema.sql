@@ -0,0 +1,91 @@
+-- the schema as spring.jpa.hibernate.ddl-auto=update built it, before the schema was managed by migrations
+-- a db that already has these tables is baselined at this version (flyway.baseline-on-migrate), so this only ever
+-- runs on a brand new db
+
+create sequence hibernate_sequence start 1 increment 1;
+
+create table person (
+    id int8 not null,
+    email varchar(50) not null,
+    enabled boolean not null,
+    name_first varchar(50) not null,
+    name_last varchar(50) not null,
+    password varchar(255) not null,
+    username varchar(255) not null,
+    primary key (id),
+    constraint uk_person_username unique (username)
+);
+
+create table role (
+    id int8 not null,
+    role varchar(255),
+    primary key (id),
+    constraint uk_role_role unique (role)
+);
+
+create table skill (
+    id int8 not null,
+    rating varchar(255),
+    skill varchar(50) not null,
+    primary key (id)
+);
+
+create table education_achievement (
+    id int8 not null,
+    graduation_year int8 not null check (graduation_year>=1900),
+    major varchar(50) not null,
+    school varchar(50) not null,
+    person_id int8,
+    primary key (id)
+);
+
+create table work_experience (
+    id int8 not null,
+    company varchar(50) not null,
+    date_end date,
+    date_start date not null,
+    duty_one varchar(50) not null,
+    duty_two varchar(50),
+    job_title varchar(50) not null,
+    person_id int8,
+    primary key (id)
+);
+
+create table job (
+    id int8 not null,
+    description varchar(255) not null,
+    employer varchar(50) not null,
+    max_salary int8 not null check (max_salary<=1000000),
+    min_salary int8 not null check (min_salary<=1000000),
+    title varchar(50) not null,
+    person_id int8,
+    primary key (id)
+);
+
+create table person_roles (
+    person_id int8 not null,
+    role_id int8 not null,
+    primary key (person_id, role_id)
+);
+
+create table person_skills (
+    person_id int8 not null,
+    skill_id int8 not null,
+    primary key (person_id, skill_id)
+);
+
+create table job_skills (
+    job_id int8 not null,
+    skill_id int8 not null,
+    primary key (job_id, skill_id)
+);
+
+alter table education_achievement add constraint fk_education_achievement_person foreign key (person_id) references person;
+alter table work_experience add constraint fk_work_experience_person foreign key (person_id) references person;
+alter table job add constraint fk_job_person foreign key (person_id) references person;
+alter table person_roles add constraint fk_person_roles_person foreign key (person_id) references person;
+alter table person_roles add constraint fk_person_roles_role foreign key (role_id) references role;
+alter table person_skills add constraint fk_person_skills_person foreign key (person_id) references person;
+alter table person_skills add constraint fk_person_skills_skill foreign key (skill_id) references skill;
+alter table job_skills add constraint fk_job_skills_job foreign key (job_id) references job;
+alter table job_skills add constraint fk_job_skills_skill foreign key (skill_id) references skill;
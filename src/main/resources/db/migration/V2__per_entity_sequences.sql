@@ -0,0 +1,20 @@
+-- one pooled sequence per table (see the @SequenceGenerators on the models) instead of the shared hibernate_sequence
+-- each sequence is moved past the highest id already in its table, so new ids can't collide with the ones
+-- hibernate_sequence handed out.  increment must match allocationSize on the models
+-- 'if not exists' because a db may already have had the old db/align-sequences.sql run on it by hand
+
+create sequence if not exists person_seq increment 50;
+create sequence if not exists job_seq increment 50;
+create sequence if not exists skill_seq increment 50;
+create sequence if not exists education_achievement_seq increment 50;
+create sequence if not exists work_experience_seq increment 50;
+create sequence if not exists role_seq increment 50;
+create sequence if not exists job_match_seq increment 50;
+
+select setval('person_seq', (select coalesce(max(id), 0) + 1 from person));
+select setval('job_seq', (select coalesce(max(id), 0) + 1 from job));
+select setval('skill_seq', (select coalesce(max(id), 0) + 1 from skill));
+select setval('education_achievement_seq', (select coalesce(max(id), 0) + 1 from education_achievement));
+select setval('work_experience_seq', (select coalesce(max(id), 0) + 1 from work_experience));
+select setval('role_seq', (select coalesce(max(id), 0) + 1 from role));
+select setval('job_match_seq', (select coalesce(max(id), 0) + 1 from job_match));
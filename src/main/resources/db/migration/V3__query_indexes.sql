@@ -0,0 +1,24 @@
+-- indexes for the repository queries, every query that filters or joins a table has an index that starts with one of
+-- the columns it filters on.  the primary keys and unique constraints from V1 already cover the lookups by id,
+-- username and role name, and the joins from a person or job into person_roles, person_skills and job_skills
+-- RepositoryIndexTest fails the build if a repository query is added without an index to go with it
+
+-- a seeker's education and work experience: findAllByMyPersonIs, countAllByMyPersonIs, deleteAllByPerson
+create index if not exists education_achievement_person_id_idx on education_achievement (person_id);
+create index if not exists work_experience_person_id_idx on work_experience (person_id);
+
+-- a recruiter's postings in the same order as JobRepo.findPostings/After/Before, so keyset paging reads just one page
+-- of the index, also used by findAllByMyPersonIs, findPostingIds and deletePostings
+create index if not exists job_person_id_employer_id_idx on job (person_id, lower(employer), id);
+
+-- SkillRepo.findBySkillIsAndRatingIs
+create index if not exists skill_skill_rating_idx on skill (skill, rating);
+
+-- PersonRepo.findByEmail and countByEmail, checked on every registration
+create index if not exists person_email_idx on person (email);
+
+-- a job's best matches in the same order as JobMatchRepo.findAllByJobId, so the top-k are the first rows of the index
+create index if not exists job_match_job_id_rank_idx on job_match (job_id, rating_matches desc, name_matches desc, person_id);
+
+-- JobMatchRepo.deleteAllBySeekerId
+create index if not exists job_match_person_id_idx on job_match (person_id);
@@ -0,0 +1,26 @@
+-- spring session's jdbc store (spring-session 1.3, see its schema-postgresql.sql), one row per logged in user plus one
+-- per session attribute, ie the security context.  attribute bytes are deflated java serialization, see
+-- SessionConfiguration
+
+create table spring_session (
+    session_id char(36) not null,
+    creation_time bigint not null,
+    last_access_time bigint not null,
+    max_inactive_interval int not null,
+    principal_name varchar(100),
+    constraint spring_session_pk primary key (session_id)
+);
+
+-- the once a minute delete of expired sessions
+create index spring_session_last_access_time_idx on spring_session (last_access_time);
+
+-- the primary key also covers reading all of one session's attributes, so spring session's extra index on
+-- session_id alone is left out
+create table spring_session_attributes (
+    session_id char(36) not null,
+    attribute_name varchar(200) not null,
+    attribute_bytes bytea not null,
+    constraint spring_session_attributes_pk primary key (session_id, attribute_name),
+    constraint spring_session_attributes_fk foreign key (session_id) references spring_session (session_id)
+        on delete cascade
+);
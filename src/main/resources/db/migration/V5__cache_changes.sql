@@ -0,0 +1,22 @@
+-- what each app instance changed, so the others can update their in memory caches, see CacheSync
+-- made_at comes from the db, so every instance polls by the same clock.  rows are only kept for a while
+create sequence if not exists cache_change_seq increment 50;
+
+create table cache_change (
+    id int8 not null,
+    node varchar(36) not null,
+    kind varchar(20) not null,
+    target_id int8 not null,
+    username varchar(255),
+    made_at timestamp not null default current_timestamp,
+    primary key (id)
+);
+
+-- CacheChangeRepo.findAllMadeSince and deleteAllMadeBefore
+create index if not exists cache_change_made_at_idx on cache_change (made_at);
+
+-- match runs for the same job and seeker on two instances can't both save a row for them, the second one fails and
+-- is run again (see JobMatchService).  any duplicates from before are dropped first, keeping the oldest row
+delete from job_match a using job_match b
+    where a.job_id = b.job_id and a.person_id = b.person_id and a.id > b.id;
+alter table job_match add constraint uk_job_match_job_person unique (job_id, person_id);
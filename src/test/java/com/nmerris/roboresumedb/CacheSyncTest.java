@@ -0,0 +1,175 @@
+package com.nmerris.roboresumedb;
+
+import com.nmerris.roboresumedb.models.*;
+import com.nmerris.roboresumedb.repositories.*;
+import com.nmerris.roboresumedb.services.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays a second node: the test changes the db behind this node's back and saves a CacheChange for it, the way
+ * another node's route would, and checks that this node's caches only catch up once it polls.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachesync;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.session.store-type=hash_map",
+        "management.port=-1",
+        // only polled when the test says so
+        "jobpro.sync.poll-ms=3600000"})
+public class CacheSyncTest {
+
+    private static final String SEEKER = "syncseeker";
+    private static final String OTHER_NODE = "other-node";
+
+    @Autowired
+    CacheSync cacheSync;
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    SkillMatchIndex skillMatchIndex;
+
+    @Autowired
+    ResumeCache resumeCache;
+
+    @Autowired
+    ResumeCounters resumeCounters;
+
+    @Autowired
+    CacheChangeRepo cacheChangeRepo;
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    RoleRepo roleRepo;
+
+    @Autowired
+    SkillRepo skillRepo;
+
+    @Autowired
+    EducationRepo educationRepo;
+
+    @Autowired
+    JobRepo jobRepo;
+
+
+    @Test
+    public void anotherNodesResumeChangesAreReloaded() {
+        Person seeker = personRepo.findResumeByUsername(SEEKER);
+        assertEquals(Collections.singletonList(seeker.getId()), ids(searchIndex.findPeople("Ada", null, null), Person::getId));
+        assertEquals(0, resumeCounters.get(seeker).getNumEdAchievements());
+        String etag = resumeCache.etag(SEEKER);
+
+        // the other node renames the seeker, adds a school and a skill
+        seeker.setNameFirst("Grace");
+        Skill skill = new Skill();
+        skill.setSkill("Cobol");
+        skill.setRating("Expert");
+        skillRepo.save(skill);
+        seeker.addSkill(skill);
+        personRepo.save(seeker);
+        EducationAchievement education = new EducationAchievement();
+        education.setSchool("Yale");
+        education.setMajor("Mathematics");
+        education.setGraduationYear(1934);
+        education.setMyPerson(seeker);
+        educationRepo.save(education);
+        otherNodeChanged(CacheChange.PERSON, seeker.getId(), SEEKER);
+
+        Job job = new Job();
+        job.setId(-1);
+        job.addSkill(skill);
+        assertTrue(searchIndex.findPeople("Grace", null, null).getItems().isEmpty());
+        assertFalse(matchedSeekerIds(job).contains(seeker.getId()));
+
+        cacheSync.poll();
+        assertEquals(Collections.singletonList(seeker.getId()), ids(searchIndex.findPeople("Grace", null, null), Person::getId));
+        assertTrue(searchIndex.findPeople("Ada", null, null).getItems().isEmpty());
+        assertEquals(Collections.singletonList(education.getId()),
+                ids(searchIndex.findSchools("Yale", null, null), EducationAchievement::getId));
+        assertTrue(matchedSeekerIds(job).contains(seeker.getId()));
+        assertEquals(1, resumeCounters.get(seeker).getNumEdAchievements());
+        assertNotEquals(etag, resumeCache.etag(SEEKER));
+    }
+
+    @Test
+    public void anotherNodesJobsAreIndexedAndDropped() {
+        Job job = new Job();
+        job.setTitle("Fortran Developer");
+        job.setEmployer("Acme");
+        job.setDescription("Numerical code");
+        jobRepo.save(job);
+        otherNodeChanged(CacheChange.JOB, job.getId(), null);
+        assertTrue(searchIndex.findJobs("fortran", null, null).getItems().isEmpty());
+
+        cacheSync.poll();
+        assertEquals(Collections.singletonList(job.getId()), ids(searchIndex.findJobs("fortran", null, null), Job::getId));
+
+        jobRepo.delete(job.getId());
+        otherNodeChanged(CacheChange.JOB, job.getId(), null);
+        cacheSync.poll();
+        assertTrue(searchIndex.findJobs("fortran", null, null).getItems().isEmpty());
+    }
+
+
+    private void otherNodeChanged(String kind, long targetId, String username) {
+        cacheChangeRepo.save(new CacheChange(OTHER_NODE, kind, targetId, username));
+    }
+
+    private List<Long> matchedSeekerIds(Job job) {
+        List<Long> ids = new ArrayList<>();
+        for (SkillMatch match : skillMatchIndex.topMatches(job)) {
+            ids.add(match.getPerson().getId());
+        }
+        return ids;
+    }
+
+    private static <T> List<Long> ids(ResultPage<T> page, Function<T, Long> id) {
+        List<Long> ids = new ArrayList<>();
+        for (T item : page.getItems()) {
+            ids.add(id.apply(item));
+        }
+        return ids;
+    }
+
+    @Before
+    public void seed() {
+        Person seeker = personRepo.findByUsername(SEEKER);
+        if(seeker == null) {
+            Role role = new Role();
+            role.setRole("ROLE_USER");
+            roleRepo.save(role);
+            seeker = new Person();
+            seeker.setUsername(SEEKER);
+            seeker.setPassword("password");
+            seeker.setEmail("seeker@example.com");
+            seeker.setEnabled(true);
+            seeker.addRole(role);
+        }
+        // the first test renames the seeker
+        seeker.setNameFirst("Ada");
+        seeker.setNameLast("Seeker");
+        personRepo.save(seeker);
+        searchIndex.indexPerson(seeker);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.nmerris.roboresumedb;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the flyway migrations and starts the app on the result with ddl-auto=validate, the same way production does,
+ * so a migration that leaves out a table or column an entity needs fails the build.  Both ways a db gets migrated are
+ * covered: a new, empty one gets every migration, and one that ddl-auto=update built before there were migrations is
+ * baselined at V1 and gets the rest.
+ * The db is H2 in PostgreSQL mode.  H2 can't run a few postgres only statements, those are swapped for H2 ones that
+ * leave the same tables and columns (see h2), everything else runs exactly as written.
+ */
+public class MigrationTest {
+
+    private static final File MIGRATIONS = new File("target/h2-migrations");
+
+
+    @Test
+    public void newDbGetsEveryMigration() throws Exception {
+        String url = url("newdb");
+        try (ConfigurableApplicationContext app = start(url)) {
+            MigrationInfo[] applied = app.getBean(Flyway.class).info().applied();
+            assertEquals("1", applied[0].getVersion().toString());
+            assertEquals(migrationCount(), applied.length);
+        }
+    }
+
+    @Test
+    public void dbFromBeforeMigrationsIsBaselinedThenMigrated() throws Exception {
+        String url = url("baselined");
+        // the tables ddl-auto=update built, which are exactly V1, with a job already posted
+        try (Connection connection = DriverManager.getConnection(url, "sa", "sa");
+             Statement statement = connection.createStatement()) {
+            statement.execute(new String(Files.readAllBytes(new File(MIGRATIONS, "V1__initial_schema.sql").toPath()),
+                    StandardCharsets.UTF_8));
+            statement.execute("insert into person (id, email, enabled, name_first, name_last, password, username) " +
+                    "values (7, 'r@example.com', true, 'Rita', 'Recruiter', 'x', 'rita')");
+            statement.execute("insert into job (id, description, employer, max_salary, min_salary, title, person_id) " +
+                    "values (8, 'Java', 'Acme', 2, 1, 'Developer', 7)");
+        }
+
+        try (ConfigurableApplicationContext app = start(url)) {
+            MigrationInfo[] applied = app.getBean(Flyway.class).info().applied();
+            assertEquals("<< Flyway Baseline >>", applied[0].getDescription());
+            assertEquals("1", applied[0].getVersion().toString());
+            // the baseline stands in for V1, everything after it ran
+            assertEquals(migrationCount(), applied.length);
+        }
+    }
+
+
+    // every migration, rewritten for H2 where it has to be
+    @BeforeClass
+    public static void copyMigrations() throws Exception {
+        // a migration that was renamed or removed since the last run mustn't linger
+        FileSystemUtils.deleteRecursively(MIGRATIONS);
+        MIGRATIONS.mkdirs();
+        for (Resource migration : migrations()) {
+            String sql = StreamUtils.copyToString(migration.getInputStream(), StandardCharsets.UTF_8);
+            Files.write(new File(MIGRATIONS, migration.getFilename()).toPath(), h2(sql).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // H2 has no expression indexes (lower(employer) becomes employer) and no delete ... using (only ever deletes
+    // duplicates, there are none in a test db)
+    private static String h2(String sql) {
+        return sql.replaceAll("lower\\((\\w+)\\)", "$1")
+                .replaceAll("(?s)delete from \\w+ \\w+ using [^;]*;", "");
+    }
+
+    // H2 has no setval either, this stands in for it, see url
+    public static long setval(Connection connection, String sequence, long value) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("alter sequence " + sequence + " restart with " + value);
+        }
+        return value;
+    }
+
+    private static String url(String db) {
+        return "jdbc:h2:mem:" + db + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;INIT=create alias if not exists setval for \""
+                + MigrationTest.class.getName() + ".setval\"";
+    }
+
+    // as command line args, they'd lose to application.properties as the builder's (default) properties, and an empty
+    // one isn't allowed there, so sa has a password
+    private static ConfigurableApplicationContext start(String url) {
+        return new SpringApplicationBuilder(Week4ProjectApplication.class).run(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=sa",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--flyway.locations=filesystem:" + MIGRATIONS.getPath(),
+                "--spring.jpa.hibernate.ddl-auto=validate",
+                "--spring.session.store-type=hash_map",
+                "--server.port=0",
+                "--management.port=-1");
+    }
+
+    private static Resource[] migrations() throws Exception {
+        Resource[] migrations = new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/*.sql");
+        assertTrue("no migrations found", migrations.length > 0);
+        return migrations;
+    }
+
+    private static int migrationCount() throws Exception {
+        return migrations().length;
+    }
+
+}
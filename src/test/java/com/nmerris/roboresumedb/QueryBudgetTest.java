@@ -0,0 +1,256 @@
+package com.nmerris.roboresumedb;
+
+import com.nmerris.roboresumedb.models.*;
+import com.nmerris.roboresumedb.repositories.*;
+import com.nmerris.roboresumedb.services.QueryStats;
+import com.nmerris.roboresumedb.services.ResumeCache;
+import com.nmerris.roboresumedb.services.SkillCatalog;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Fails the build when a page runs more sql than its budget, ie an N+1 sneaks into a template or a route starts
+ * loading the same thing twice.  The counts come from QueryStats, the same numbers /metrics shows.  Runs against an
+ * in memory H2 db with a few seekers and a recruiter, every list on the measured pages has several rows, so a query
+ * per row can't hide.  If a change really does need another query, raise the route's budget in the same commit.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querybudget;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        // the migrations are postgres sql, hibernate builds the H2 schema from the entities instead
+        "flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // the in memory stand in for the jdbc session store
+        "spring.session.store-type=hash_map",
+        "management.port=-1"})
+// no security filters, the logged in user is passed straight to each request, see queries
+@AutoConfigureMockMvc(addFilters = false)
+public class QueryBudgetTest {
+
+    private static final String SEEKER = "seeker";
+    private static final String RECRUITER = "recruiter";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    QueryStats queryStats;
+
+    @Autowired
+    ResumeCache resumeCache;
+
+    @Autowired
+    SkillCatalog skillCatalog;
+
+    @Autowired
+    RoleRepo roleRepo;
+
+    @Autowired
+    SkillRepo skillRepo;
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    EducationRepo educationRepo;
+
+    @Autowired
+    WorkExperienceRepo workExperienceRepo;
+
+    @Autowired
+    JobRepo jobRepo;
+
+
+    @Test
+    public void seekerPages() throws Exception {
+        assertBudget("GET /editdetails", 3, get("/editdetails"), SEEKER);
+        assertBudget("GET /addeducation", 1, get("/addeducation"), SEEKER);
+        assertBudget("GET /addworkexperience", 1, get("/addworkexperience"), SEEKER);
+        assertBudget("GET /addskill", 1, get("/addskill"), SEEKER);
+        assertBudget("GET /recommendedjobs", 2, get("/recommendedjobs"), SEEKER);
+    }
+
+    @Test
+    public void finalResume() throws Exception {
+        // the rendered page is cached, drop it so the page is really built
+        resumeCache.resumeChanged(SEEKER);
+        long queries = queries(get("/finalresume"), SEEKER, "GET /finalresume");
+        assertTrue("GET /finalresume ran " + queryStats.last("GET /finalresume") + ", its budget is 3 queries",
+                queries <= 3);
+        // and showing the cached page needs none
+        assertEquals(0, queries(get("/finalresume"), SEEKER, "GET /finalresume"));
+    }
+
+    @Test
+    public void updatePages() throws Exception {
+        Person seeker = personRepo.findByUsername(SEEKER);
+        long edId = educationRepo.findAllByMyPersonIs(seeker).iterator().next().getId();
+        long workExpId = workExperienceRepo.findAllByMyPersonIs(seeker).iterator().next().getId();
+        assertBudget("GET /update/{id}", 1, get("/update/0").param("type", "person"), SEEKER);
+        assertBudget("GET /update/{id}", 2, get("/update/" + edId).param("type", "ed"), SEEKER);
+        assertBudget("GET /update/{id}", 2, get("/update/" + workExpId).param("type", "workexp"), SEEKER);
+
+        long jobId = jobRepo.findAllByMyPersonIs(personRepo.findByUsername(RECRUITER)).iterator().next().getId();
+        assertBudget("GET /update/{id}", 2, get("/update/" + jobId).param("type", "job"), RECRUITER);
+    }
+
+    @Test
+    public void personalDetails() throws Exception {
+        long skills = personRepo.countSkillsById(personRepo.findByUsername(SEEKER).getId());
+        // with the hidden fields the form sends back too
+        assertBudget("POST /addperson", 4, post("/addperson").param("nameFirst", "Jo").param("nameLast", "Seeker")
+                .param("email", "jo@example.com").param("username", SEEKER).param("password", "password"), SEEKER);
+        // the form has no skills, they must be left alone
+        assertEquals(skills, personRepo.countSkillsById(personRepo.findByUsername(SEEKER).getId()));
+        assertEquals("Jo", personRepo.findByUsername(SEEKER).getNameFirst());
+    }
+
+    @Test
+    public void search() throws Exception {
+        for (String type : new String[]{"people", "jobs", "companies", "schools"}) {
+            assertBudget("POST /search", 2, post("/search").param("type", type).param("searchString", "java"), SEEKER);
+        }
+    }
+
+    @Test
+    public void recruiterPages() throws Exception {
+        assertBudget("GET /summary", 4, get("/summary"), RECRUITER);
+        assertBudget("GET /joblist", 4, get("/joblist"), RECRUITER);
+
+        long jobId = jobRepo.findAllByMyPersonIs(personRepo.findByUsername(RECRUITER)).iterator().next().getId();
+        assertBudget("GET /jobmatches/{id}", 3, get("/jobmatches/" + jobId), RECRUITER);
+        assertBudget("GET /jobmatches/{id}/results", 3, get("/jobmatches/" + jobId + "/results"), RECRUITER);
+    }
+
+
+    // runs the request twice and checks the second one, so one off loads (ie an in memory index being built the first
+    // time it's used) don't count against the route
+    private void assertBudget(String route, long maxQueries, MockHttpServletRequestBuilder request, String username)
+            throws Exception {
+        queries(request, username, route);
+        long queries = queries(request, username, route);
+        assertTrue(route + " ran " + queryStats.last(route) + ", its budget is " + maxQueries + " queries",
+                queries <= maxQueries);
+    }
+
+    private long queries(MockHttpServletRequestBuilder request, String username, String route) throws Exception {
+        MvcResult result = mockMvc.perform(request.principal(new UsernamePasswordAuthenticationToken(username, null)))
+                .andReturn();
+        assertNull(route + " threw", result.getResolvedException());
+        assertTrue(route + " failed with " + result.getResponse().getStatus(), result.getResponse().getStatus() < 400);
+        assertEquals(route, result.getRequest().getMethod() + " "
+                + result.getRequest().getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+        return queryStats.last(route).getQueries();
+    }
+
+
+    // every test method gets the same app, so the data is only saved once
+    @Before
+    public void seed() {
+        if(personRepo.findByUsername(SEEKER) != null) {
+            return;
+        }
+        Role userRole = new Role();
+        userRole.setRole("ROLE_USER");
+        roleRepo.save(userRole);
+        Role recruiterRole = new Role();
+        recruiterRole.setRole("ROLE_RECRUITER");
+        roleRepo.save(recruiterRole);
+
+        List<Skill> catalog = new ArrayList<>();
+        for (String name : new String[]{"Java", "Spring", "SQL", "Docker", "Python"}) {
+            for (String rating : new String[]{"Expert", "Proficient", "Familiar"}) {
+                Skill skill = new Skill();
+                skill.setSkill(name);
+                skill.setRating(rating);
+                catalog.add(skill);
+            }
+        }
+        skillRepo.save(catalog);
+        skillCatalog.refresh();
+
+        // the seeker every seeker page is checked as, and a few more so searches and matches have more than one row
+        List<Person> seekers = new ArrayList<>();
+        List<EducationAchievement> eds = new ArrayList<>();
+        List<WorkExperience> workExps = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Person seeker = newPerson(i == 0 ? SEEKER : SEEKER + i, userRole);
+            for (int s = 0; s < 4; s++) {
+                seeker.addSkill(catalog.get((i + s * 4) % catalog.size()));
+            }
+            seekers.add(seeker);
+            for (int e = 0; e < 3; e++) {
+                EducationAchievement ea = new EducationAchievement();
+                ea.setSchool("Java School " + e);
+                ea.setMajor("CS");
+                ea.setGraduationYear(2000 + e);
+                ea.setMyPerson(seeker);
+                eds.add(ea);
+
+                WorkExperience we = new WorkExperience();
+                we.setCompany("Java Corp " + e);
+                we.setJobTitle("Developer");
+                we.setDutyOne("Java");
+                we.setDateStart(new Date());
+                we.setMyPerson(seeker);
+                workExps.add(we);
+            }
+        }
+        personRepo.save(seekers);
+        educationRepo.save(eds);
+        workExperienceRepo.save(workExps);
+
+        Person recruiter = newPerson(RECRUITER, recruiterRole);
+        personRepo.save(recruiter);
+        List<Job> jobs = new ArrayList<>();
+        for (int j = 0; j < 4; j++) {
+            Job job = new Job();
+            job.setTitle("Java Developer " + j);
+            job.setEmployer("Java Corp " + j);
+            job.setDescription("Java and Spring");
+            job.setMinSalary(50000);
+            job.setMaxSalary(90000);
+            job.addSkill(catalog.get(j));
+            job.addSkill(catalog.get(j + 4));
+            job.setMyPerson(recruiter);
+            // already matched (with no matches), so /jobmatches never has to wait on a background match
+            job.setMatchedAt(new Date());
+            jobs.add(job);
+        }
+        jobRepo.save(jobs);
+    }
+
+    private static Person newPerson(String username, Role role) {
+        Person p = new Person();
+        p.setUsername(username);
+        p.setPassword("password");
+        p.setNameFirst("Java");
+        p.setNameLast(username);
+        p.setEmail(username + "@example.com");
+        p.setEnabled(true);
+        p.addRole(role);
+        return p;
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.nmerris.roboresumedb;
+
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.models.Role;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import com.nmerris.roboresumedb.repositories.RoleRepo;
+import com.nmerris.roboresumedb.services.ReplicaRouter;
+import com.nmerris.roboresumedb.services.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which pool each kind of transaction gets its connection from.  The replica is a second pool on the same in
+ * memory H2 db as the primary, so it's a replica that's always caught up, and its lag is whatever the test puts in
+ * the replica_lag table.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.session.store-type=hash_map",
+        "management.port=-1",
+        "jobpro.datasource.replica-urls=jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1",
+        "jobpro.datasource.replica-lag-query=select max(lag_ms) from replica_lag",
+        // only checked when the test says so
+        "jobpro.datasource.replica-check-ms=3600000"})
+public class ReplicaRoutingTest {
+
+    private static final String SEEKER = "seeker";
+
+    @Autowired
+    ReplicaRouter replicaRouter;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    PersonRepo personRepo;
+
+    @Autowired
+    RoleRepo roleRepo;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+
+    @Test
+    public void serviceReadOnlyTransactionsUseTheReplica() {
+        long replicaBorrows = borrows("replica1");
+        assertEquals(SEEKER, userService.findResume(SEEKER).getPerson().getUsername());
+        assertEquals(replicaBorrows + 1, borrows("replica1"));
+    }
+
+    @Test
+    public void readsForCachesUseThePrimary() {
+        long replicaBorrows = borrows("replica1");
+        assertFalse(userService.findResume(SEEKER).isFromPrimary());
+        assertEquals(replicaBorrows + 1, borrows("replica1"));
+
+        Resume resume = ReplicaRouter.onPrimary(() -> userService.findResume(SEEKER));
+        assertTrue(resume.isFromPrimary());
+        assertEquals(replicaBorrows + 1, borrows("replica1"));
+    }
+
+    @Test
+    public void repositoryReadsAndWritesUseThePrimary() {
+        long replicaBorrows = borrows("replica1");
+        Person seeker = personRepo.findByUsername(SEEKER);
+        seeker.setNameFirst("Changed");
+        personRepo.save(seeker);
+        assertEquals(replicaBorrows, borrows("replica1"));
+    }
+
+    @Test
+    public void requestReadsItsOwnWritesFromThePrimary() {
+        long replicaBorrows = borrows("replica1");
+        long fallbackReads = replicaRouter.getFallbackReads();
+        ReplicaRouter.startRequest(false);
+        try {
+            personRepo.save(personRepo.findByUsername(SEEKER));
+            assertTrue(ReplicaRouter.wroteInRequest());
+            userService.findResume(SEEKER);
+        } finally {
+            ReplicaRouter.endRequest();
+        }
+
+        // and so does the user's next request, if it's soon after
+        ReplicaRouter.startRequest(true);
+        try {
+            userService.findResume(SEEKER);
+        } finally {
+            ReplicaRouter.endRequest();
+        }
+        assertEquals(replicaBorrows, borrows("replica1"));
+        assertEquals(fallbackReads + 2, replicaRouter.getFallbackReads());
+    }
+
+    @Test
+    public void connectionsForAnotherUserAreRoutedToo() throws SQLException {
+        long primaryBorrows = borrows("primary");
+        try (Connection connection = dataSource.getConnection("sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("select 1");
+        }
+        assertTrue(borrows("primary") > primaryBorrows);
+    }
+
+    @Test
+    public void laggingReplicaIsNotUsedUntilItCatchesUp() {
+        setLag(5000);
+        ReplicaRouter.Replica replica = replicaRouter.getReplicas().get(0);
+        assertFalse(replica.isUsable());
+        assertEquals(5000, replica.getLagMs());
+
+        long replicaBorrows = borrows("replica1");
+        long fallbackReads = replicaRouter.getFallbackReads();
+        userService.findResume(SEEKER);
+        assertEquals(replicaBorrows, borrows("replica1"));
+        assertEquals(fallbackReads + 1, replicaRouter.getFallbackReads());
+
+        setLag(0);
+        assertTrue(replica.isUsable());
+        replicaBorrows = borrows("replica1");
+        userService.findResume(SEEKER);
+        assertEquals(replicaBorrows + 1, borrows("replica1"));
+    }
+
+
+    private long borrows(String pool) {
+        return replicaRouter.getPools().get(pool).getBorrowedCount();
+    }
+
+    private void setLag(long lagMs) {
+        jdbcTemplate.update("update replica_lag set lag_ms = ?", lagMs);
+        replicaRouter.checkReplicas();
+    }
+
+    @Before
+    public void seed() {
+        jdbcTemplate.execute("create table if not exists replica_lag (lag_ms bigint)");
+        if(personRepo.findByUsername(SEEKER) == null) {
+            jdbcTemplate.update("insert into replica_lag values (0)");
+            Role role = new Role();
+            role.setRole("ROLE_USER");
+            roleRepo.save(role);
+            Person seeker = new Person();
+            seeker.setUsername(SEEKER);
+            seeker.setPassword("password");
+            seeker.setNameFirst("Java");
+            seeker.setNameLast("Seeker");
+            seeker.setEmail("seeker@example.com");
+            seeker.setEnabled(true);
+            seeker.addRole(role);
+            personRepo.save(seeker);
+        }
+        setLag(0);
+    }
+
+    @After
+    public void clearRequest() {
+        ReplicaRouter.endRequest();
+    }
+
+}
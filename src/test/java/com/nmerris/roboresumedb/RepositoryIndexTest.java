@@ -0,0 +1,269 @@
+package com.nmerris.roboresumedb;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.util.StreamUtils;
+
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Fails the build when a repository query filters or joins a table that has no index to support it.  No db needed:
+ * the indexes are read from the flyway migrations, and the columns each query uses are worked out from the entity
+ * annotations.  A query is supported when every table it filters or joins through has an index (or primary key or
+ * unique constraint) whose FIRST column is one the query filters that table on.  Queries that read a whole table
+ * (no where clause, ie the ones that build the in memory indexes) need nothing.
+ */
+public class RepositoryIndexTest {
+
+    private static final String MODELS = "com.nmerris.roboresumedb.models.";
+
+    @Test
+    public void everyRepositoryQueryHasAnIndex() throws Exception {
+        Map<String, Set<String>> leadingColumns = leadingColumnsByTable();
+        List<String> problems = new ArrayList<>();
+        int queries = 0;
+
+        for (Class<?> repo : repositories()) {
+            Class<?> entity = ResolvableType.forClass(repo).as(Repository.class).getGeneric(0).resolve();
+            for (Method method : repo.getDeclaredMethods()) {
+                queries++;
+                Map<String, Set<String>> filters;
+                try {
+                    filters = filteredColumns(method, entity);
+                } catch (RuntimeException e) {
+                    // better to fail than to silently skip a query this test can't read
+                    problems.add(repo.getSimpleName() + "." + method.getName() + ": could not read the query, " + e.getMessage());
+                    continue;
+                }
+                for (Map.Entry<String, Set<String>> filter : filters.entrySet()) {
+                    Set<String> leading = leadingColumns.getOrDefault(filter.getKey(), Collections.emptySet());
+                    if(Collections.disjoint(leading, filter.getValue())) {
+                        problems.add(repo.getSimpleName() + "." + method.getName() + ": no index on "
+                                + filter.getKey() + " starting with any of " + filter.getValue());
+                    }
+                }
+            }
+        }
+
+        assertTrue("no repository queries found", queries > 0);
+        if(!problems.isEmpty()) {
+            fail("add an index in a new db/migration script for:\n" + String.join("\n", problems));
+        }
+    }
+
+
+    // table -> the first column of each of its indexes, primary keys and unique constraints, from every migration
+    private static Map<String, Set<String>> leadingColumnsByTable() throws Exception {
+        StringBuilder sql = new StringBuilder();
+        Resource[] migrations = new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/*.sql");
+        assertTrue("no migrations found", migrations.length > 0);
+        for (Resource migration : migrations) {
+            sql.append(StreamUtils.copyToString(migration.getInputStream(), StandardCharsets.UTF_8)).append('\n');
+        }
+
+        Map<String, Set<String>> leading = new HashMap<>();
+        for (String statement : sql.toString().replaceAll("--[^\n]*", "").split(";")) {
+            String s = statement.trim().replaceAll("\\s+", " ").toLowerCase();
+            Matcher m;
+            if((m = Pattern.compile("^create table (\\w+) \\((.*)\\)$").matcher(s)).matches()) {
+                Matcher keys = Pattern.compile("(?:primary key|unique) \\(([^)]*)\\)").matcher(m.group(2));
+                while (keys.find()) {
+                    addLeading(leading, m.group(1), keys.group(1));
+                }
+            }
+            else if((m = Pattern.compile("^alter table (\\w+) add (?:constraint \\w+ )?(?:primary key|unique) \\((.*)\\)$").matcher(s)).matches()
+                    || (m = Pattern.compile("^create (?:unique )?index (?:if not exists )?\\w+ on (\\w+)(?: using \\w+)? \\((.*)\\)$").matcher(s)).matches()) {
+                addLeading(leading, m.group(1), m.group(2));
+            }
+        }
+        return leading;
+    }
+
+    // the first column of a column list, an expression like lower(employer) counts as its column
+    private static void addLeading(Map<String, Set<String>> leading, String table, String columns) {
+        String first = columns.split(",")[0].trim().replaceAll("^\\w+\\((\\w+)\\).*$", "$1").split(" ")[0];
+        leading.computeIfAbsent(table, t -> new HashSet<>()).add(first);
+    }
+
+    private static List<Class<?>> repositories() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                return beanDefinition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(Repository.class));
+        List<Class<?>> repos = new ArrayList<>();
+        for (BeanDefinition definition : scanner.findCandidateComponents("com.nmerris.roboresumedb.repositories")) {
+            repos.add(Class.forName(definition.getBeanClassName()));
+        }
+        assertTrue("no repositories found", !repos.isEmpty());
+        return repos;
+    }
+
+
+    // table -> the columns the query filters or joins it on
+    private static Map<String, Set<String>> filteredColumns(Method method, Class<?> entity) {
+        Query query = method.getAnnotation(Query.class);
+        if(query == null) {
+            return derivedQueryColumns(method.getName(), entity);
+        }
+        return query.nativeQuery() ? nativeQueryColumns(query.value()) : jpqlColumns(query.value());
+    }
+
+    // findAllByMyPersonIs etc, Spring Data's own parser finds the properties
+    private static Map<String, Set<String>> derivedQueryColumns(String methodName, Class<?> entity) {
+        Map<String, Set<String>> columns = new HashMap<>();
+        for (Part part : new PartTree(methodName, entity).getParts()) {
+            addColumn(columns, entity, part.getProperty().toDotPath());
+        }
+        return columns;
+    }
+
+    // select ... from Person p join p.skills s where p.id = ?1 etc
+    // every alias.property in the where clause is a filter, and every join through a many to many join table needs
+    // that table indexed on the column it's joined from
+    private static Map<String, Set<String>> jpqlColumns(String jpql) {
+        String q = jpql.replaceAll("\\s+", " ");
+        Map<String, Class<?>> aliases = new HashMap<>();
+        Map<String, Set<String>> columns = new HashMap<>();
+
+        Matcher root = Pattern.compile("(?i)(?:from|update) (\\w+) (\\w+)").matcher(q);
+        while (root.find()) {
+            aliases.put(root.group(2), entityClass(root.group(1)));
+        }
+        Matcher join = Pattern.compile("(?i)join (?:fetch )?(\\w+)\\.(\\w+) (\\w+)").matcher(q);
+        while (join.find()) {
+            Field field = field(aliases.get(join.group(1)), join.group(2));
+            aliases.put(join.group(3), targetType(field));
+            if(field.isAnnotationPresent(ManyToMany.class)) {
+                String[] joinTable = joinTable(field);
+                add(columns, joinTable[0], joinTable[1]);
+            }
+        }
+
+        Matcher where = Pattern.compile("(?i) where (.*?)(?: group by | order by |$)").matcher(q);
+        if(where.find()) {
+            Matcher property = Pattern.compile("\\b(\\w+)\\.([\\w.]+)").matcher(where.group(1));
+            while (property.find()) {
+                Class<?> aliasEntity = aliases.get(property.group(1));
+                if(aliasEntity == null) {
+                    throw new IllegalArgumentException("unknown alias " + property.group(1));
+                }
+                addColumn(columns, aliasEntity, property.group(2));
+            }
+        }
+        return columns;
+    }
+
+    // delete from job_skills where job_id in (select id from job where id in ?1 and person_id = ?2)
+    // each 'from table where ...' up to the next parenthesis is one table's filter
+    private static Map<String, Set<String>> nativeQueryColumns(String sql) {
+        Map<String, Set<String>> columns = new HashMap<>();
+        Matcher from = Pattern.compile("(?i)from (\\w+) where ([^()]*)").matcher(sql.replaceAll("\\s+", " "));
+        while (from.find()) {
+            Matcher column = Pattern.compile("(?i)(\\w+) ?(?:=|<|>|in\\b)").matcher(from.group(2));
+            while (column.find()) {
+                add(columns, from.group(1).toLowerCase(), column.group(1).toLowerCase());
+            }
+        }
+        return columns;
+    }
+
+
+    // the column for entity.path, a many to one (or its id) is its join column, a mappedBy many to many is the column
+    // of the owning side's join table
+    private static void addColumn(Map<String, Set<String>> columns, Class<?> entity, String path) {
+        String[] segments = path.split("\\.");
+        Field field = field(entity, segments[0]);
+        JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+        ManyToMany manyToMany = field.getAnnotation(ManyToMany.class);
+        if(joinColumn != null && (segments.length == 1 || segments[1].equals("id"))) {
+            add(columns, table(entity), joinColumn.name());
+        }
+        else if(manyToMany != null) {
+            // filtering on the other side, ie roles of a person
+            String[] joinTable = joinTable(field);
+            add(columns, joinTable[0], joinTable[2]);
+        }
+        else if(segments.length == 1) {
+            add(columns, table(entity), snakeCase(segments[0]));
+        }
+        else {
+            throw new IllegalArgumentException("can't follow " + entity.getSimpleName() + "." + path);
+        }
+    }
+
+    // {join table, column that points at the field's own entity, column that points at the entities in the field}
+    private static String[] joinTable(Field field) {
+        ManyToMany manyToMany = field.getAnnotation(ManyToMany.class);
+        if(!manyToMany.mappedBy().isEmpty()) {
+            Field owner = field(targetType(field), manyToMany.mappedBy());
+            JoinTable joinTable = owner.getAnnotation(JoinTable.class);
+            return new String[]{table(owner.getDeclaringClass()) + "_" + owner.getName(),
+                    joinTable.inverseJoinColumns()[0].name(), joinTable.joinColumns()[0].name()};
+        }
+        JoinTable joinTable = field.getAnnotation(JoinTable.class);
+        return new String[]{table(field.getDeclaringClass()) + "_" + field.getName(),
+                joinTable.joinColumns()[0].name(), joinTable.inverseJoinColumns()[0].name()};
+    }
+
+    private static Class<?> targetType(Field field) {
+        if(Collection.class.isAssignableFrom(field.getType())) {
+            return (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+        }
+        return field.getType();
+    }
+
+    private static Field field(Class<?> entity, String name) {
+        try {
+            return entity.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException(entity.getSimpleName() + " has no " + name);
+        }
+    }
+
+    private static Class<?> entityClass(String name) {
+        try {
+            return Class.forName(MODELS + name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("no entity " + name);
+        }
+    }
+
+    // same names spring boot's naming strategy gives tables and columns
+    private static String table(Class<?> entity) {
+        return snakeCase(entity.getSimpleName());
+    }
+
+    private static String snakeCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    private static void add(Map<String, Set<String>> columns, String table, String column) {
+        columns.computeIfAbsent(table, t -> new HashSet<>()).add(column);
+    }
+
+}
@@ -5,8 +5,17 @@ import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+// same in memory H2 db and session store as QueryBudgetTest, so it runs without postgres
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:contextloads;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"flyway.enabled=false",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.session.store-type=hash_map",
+		"management.port=-1"})
 public class Week4ProjectApplicationTests {
 
 	@Test
@@ -0,0 +1,190 @@
+package com.nmerris.roboresumedb.services;
+
+import com.nmerris.roboresumedb.SkillMatch;
+import com.nmerris.roboresumedb.models.Job;
+import com.nmerris.roboresumedb.models.Person;
+import com.nmerris.roboresumedb.models.Skill;
+import com.nmerris.roboresumedb.repositories.JobRepo;
+import com.nmerris.roboresumedb.repositories.PersonRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The matching engine on its own, no db: the repos only hand out an empty index to start from and the Persons for
+ * topMatches.  Seekers get ids 1, 2, 3... in the order they're added, so their rows are id - 1.
+ */
+public class SkillMatchIndexTest {
+
+    private SkillMatchIndex index;
+
+    private long nextSeekerId = 1;
+
+    // name + rating -> the same Skill every time, Job.addSkill tells skills apart by id
+    private final Map<String, Skill> skills = new HashMap<>();
+
+
+    @Before
+    public void setUp() {
+        index = new SkillMatchIndex();
+        index.personRepo = mock(PersonRepo.class);
+        index.jobRepo = mock(JobRepo.class);
+        when(index.personRepo.findAllSeekerSkills()).thenReturn(new ArrayList<>());
+        when(index.jobRepo.findAllJobSkills()).thenReturn(new ArrayList<>());
+        when(index.personRepo.findAll(Matchers.<Iterable<Long>>any())).thenAnswer(invocation -> {
+            List<Person> persons = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArguments()[0]) {
+                Person person = new Person();
+                person.setId((Long) id);
+                persons.add(person);
+            }
+            return persons;
+        });
+    }
+
+
+    @Test
+    public void aHigherRatingMeetsALowerOneButNotTheOtherWayRound() {
+        long expert = seeker("Java", "Expert");
+        long proficient = seeker("Java", "Proficient");
+        long familiar = seeker("Java", "Familiar");
+
+        Map<Long, int[]> scores = index.scores(job(1, "Java", "Proficient"));
+        assertArrayEquals(new int[] {1, 1}, scores.get(expert));
+        assertArrayEquals(new int[] {1, 1}, scores.get(proficient));
+        // has the name but not the rating, so not a match at all
+        assertFalse(scores.containsKey(familiar));
+    }
+
+    @Test
+    public void aNameListedAtTwoRatingsOnlyCountsOnceAsAName() {
+        long expert = seeker("Java", "Expert");
+        long familiar = seeker("Java", "Familiar");
+
+        Job job = job(1, "Java", "Familiar", "Java", "Expert");
+        Map<Long, int[]> scores = index.scores(job);
+        assertArrayEquals(new int[] {2, 1}, scores.get(expert));
+        assertArrayEquals(new int[] {1, 1}, scores.get(familiar));
+
+        // the same seen from the seeker's side
+        index.putJob(job);
+        assertArrayEquals(new int[] {2, 1}, index.jobScores(expert).get(1L));
+    }
+
+    @Test
+    public void rankedByRatingMatchesThenNameMatchesThenFirstAdded() {
+        Job job = job(1, "Java", "Expert", "SQL", "Proficient");
+        long both = seeker("Java", "Expert", "SQL", "Expert");
+        long sqlAndJavaName = seeker("SQL", "Proficient", "Java", "Familiar");
+        long sqlOnly = seeker("SQL", "Proficient");
+        long sqlOnlyToo = seeker("SQL", "Expert");
+        seeker("Python", "Expert");
+
+        List<SkillMatch> matches = index.topMatches(job, 10);
+        assertEquals(Arrays.asList(both, sqlAndJavaName, sqlOnly, sqlOnlyToo), ids(matches));
+        assertEquals(2, matches.get(0).getRatingMatches());
+        assertEquals(1, matches.get(1).getRatingMatches());
+        assertEquals(2, matches.get(1).getNameMatches());
+        assertEquals(1, matches.get(3).getNameMatches());
+    }
+
+    @Test
+    public void topKComesFromEverySegment() {
+        // well over SkillMatchIndex.SEGMENT_ROWS seekers, so the scan is split up, with the best ones spread across
+        // the segments, and ties everywhere
+        int seekers = 40000;
+        Set<Long> best = new HashSet<>(Arrays.asList(3L, 9000L, 17000L, 25000L, 39999L));
+        for (int i = 1; i <= seekers; i++) {
+            if(best.contains((long) i)) {
+                seeker("Java", "Expert", "SQL", "Expert");
+            }
+            else {
+                seeker("Java", "Familiar", "SQL", "Expert");
+            }
+        }
+        Job job = job(1, "Java", "Expert", "SQL", "Expert");
+
+        List<SkillMatch> top = index.topMatches(job, 8);
+        // the five best in seeker order, then the tie on the next best score goes to the seekers added first
+        assertEquals(Arrays.asList(3L, 9000L, 17000L, 25000L, 39999L, 1L, 2L, 4L), ids(top));
+        assertEquals(seekers, index.scores(job).size());
+    }
+
+    @Test
+    public void aSeekersBestJobsOnly() {
+        long seeker = seeker("Java", "Expert", "SQL", "Familiar");
+        index.putJob(job(1, "Java", "Familiar"));
+        index.putJob(job(2, "Java", "Expert", "SQL", "Familiar"));
+        index.putJob(job(3, "SQL", "Expert"));
+        index.putJob(job(4, "Java", "Proficient", "SQL", "Expert"));
+
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 4L)), index.jobScores(seeker).keySet());
+        // 2 meets both, 1 and 4 meet one each, but the seeker has both of 4's names
+        assertEquals(new HashSet<>(Arrays.asList(2L, 4L)), index.jobScores(seeker, 2).keySet());
+        assertEquals(Collections.singleton(2L), index.jobScores(seeker, 1).keySet());
+    }
+
+    @Test
+    public void removedSkillsAndJobsStopMatching() {
+        long seeker = seeker("Java", "Expert");
+        Job job = job(1, "Java", "Expert");
+        index.putJob(job);
+        assertEquals(1, index.jobScores(seeker).size());
+
+        index.removeJobs(Collections.singletonList(1L));
+        assertTrue(index.jobScores(seeker).isEmpty());
+
+        index.removeSeekerSkill(person(seeker), skill("Java", "Expert"));
+        assertTrue(index.scores(job).isEmpty());
+    }
+
+
+    // a new seeker with the given name, rating pairs
+    private long seeker(String... namesAndRatings) {
+        Person person = person(nextSeekerId++);
+        for (int i = 0; i < namesAndRatings.length; i += 2) {
+            index.addSeekerSkill(person, skill(namesAndRatings[i], namesAndRatings[i + 1]));
+        }
+        return person.getId();
+    }
+
+    private Job job(long id, String... namesAndRatings) {
+        Job job = new Job();
+        job.setId(id);
+        for (int i = 0; i < namesAndRatings.length; i += 2) {
+            job.addSkill(skill(namesAndRatings[i], namesAndRatings[i + 1]));
+        }
+        return job;
+    }
+
+    private Skill skill(String name, String rating) {
+        return skills.computeIfAbsent(name + " " + rating, key -> {
+            Skill skill = new Skill();
+            skill.setId(skills.size() + 1);
+            skill.setSkill(name);
+            skill.setRating(rating);
+            return skill;
+        });
+    }
+
+    private static Person person(long id) {
+        Person person = new Person();
+        person.setId(id);
+        return person;
+    }
+
+    private static List<Long> ids(List<SkillMatch> matches) {
+        List<Long> ids = new ArrayList<>();
+        for (SkillMatch match : matches) {
+            ids.add(match.getPerson().getId());
+        }
+        return ids;
+    }
+
+}